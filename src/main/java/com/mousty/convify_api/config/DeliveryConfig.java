@@ -0,0 +1,47 @@
+package com.mousty.convify_api.config;
+
+import org.apache.coyote.AbstractProtocol;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.tomcat.ConfigurableTomcatWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class DeliveryConfig implements WebMvcConfigurer {
+
+    @Value("${youtube.delivery.async-timeout-minutes:60}")
+    private long asyncTimeoutMinutes;
+
+    /**
+     * Run streaming responses on virtual threads
+     * A slow client then parks a virtual thread instead of holding a servlet worker
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(new TaskExecutorAdapter(Executors.newVirtualThreadPerTaskExecutor()));
+        configurer.setDefaultTimeout(Duration.ofMinutes(asyncTimeoutMinutes).toMillis());
+    }
+
+    /**
+     * Cut off downloads whose client stopped reading
+     * Tomcat uses the connection timeout as the limit for a blocking socket write, so it is set
+     * from the delivery write timeout; this overrides server.tomcat.connection-timeout
+     */
+    @Bean
+    public WebServerFactoryCustomizer<ConfigurableTomcatWebServerFactory> deliveryWriteTimeoutCustomizer(
+            @Value("${youtube.delivery.write-timeout-seconds:30}") long writeTimeoutSeconds) {
+        int timeoutMs = (int) Duration.ofSeconds(writeTimeoutSeconds).toMillis();
+        return factory -> factory.addConnectorCustomizers(connector -> {
+            if (connector.getProtocolHandler() instanceof AbstractProtocol<?> protocol) {
+                protocol.setConnectionTimeout(timeoutMs);
+            }
+        });
+    }
+}
@@ -0,0 +1,29 @@
+package com.mousty.convify_api.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class WebhookConfig {
+
+    @Value("${youtube.webhook.connect-timeout-seconds:5}")
+    private int connectTimeoutSeconds;
+
+    /**
+     * Shared HTTP client for webhook delivery
+     * Connections are pooled per host and responses are handled on virtual threads
+     */
+    @Bean
+    public HttpClient webhookHttpClient() {
+        return HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(connectTimeoutSeconds))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+}
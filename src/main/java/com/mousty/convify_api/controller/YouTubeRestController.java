@@ -6,10 +6,11 @@ import com.mousty.convify_api.model.ConversionJob;
 import com.mousty.convify_api.service.YoutubeService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
-import org.springframework.core.io.Resource;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/v1")
@@ -37,8 +38,10 @@ public class YouTubeRestController {
 
     @PostMapping("/download")
     @Operation(summary = "Download converted file")
-    public ResponseEntity<Resource> download(@Valid @RequestBody FilepathRequest request) {
-        return service.download(request);
+    public ResponseEntity<StreamingResponseBody> download(@Valid @RequestBody FilepathRequest request,
+                                                          HttpServletRequest httpRequest) {
+        // The forwarded client address when behind a trusted proxy (server.forward-headers-strategy)
+        return service.download(request, httpRequest.getRemoteAddr());
     }
 
     @GetMapping("/health")
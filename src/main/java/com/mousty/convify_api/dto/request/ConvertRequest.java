@@ -1,8 +1,14 @@
 package com.mousty.convify_api.dto.request;
 
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+import java.util.Locale;
 
 @Schema(description = "Request to convert a YouTube video")
 public record ConvertRequest(
@@ -16,12 +22,45 @@ public record ConvertRequest(
                 example = "https://www.youtube.com/watch?v=dQw4w9WgXcQ")
         String url,
         
-        @NotBlank(message = "Format cannot be empty")
         @Pattern(
             regexp = "^(mp3|mp4)$",
             flags = Pattern.Flag.CASE_INSENSITIVE,
             message = "Format must be either 'mp3' or 'mp4'"
         )
         @Schema(description = "Output format", example = "mp3", allowableValues = {"mp3", "mp4"})
-        String format
-) {}
+        String format,
+
+        @Size(max = 2, message = "At most two formats can be requested")
+        @ArraySchema(arraySchema = @Schema(description = "Several output formats produced from a single download; "
+                + "takes precedence over format"),
+                schema = @Schema(allowableValues = {"mp3", "mp4"}))
+        List<@NotBlank @Pattern(
+            regexp = "^(mp3|mp4)$",
+            flags = Pattern.Flag.CASE_INSENSITIVE,
+            message = "Format must be either 'mp3' or 'mp4'"
+        ) String> formats,
+
+        @Size(max = 2048, message = "Callback URL is too long")
+        @Pattern(
+            regexp = "^https?://.+",
+            message = "Callback URL must be an http or https URL"
+        )
+        @Schema(description = "Optional URL that receives a signed POST when the job completes or fails",
+                example = "https://example.com/hooks/convify")
+        String callbackUrl
+) {
+
+    @AssertTrue(message = "Format cannot be empty")
+    @Schema(hidden = true)
+    public boolean isFormatPresent() {
+        return (format != null && !format.isBlank()) || (formats != null && !formats.isEmpty());
+    }
+
+    /**
+     * Requested formats, lower-cased and de-duplicated
+     */
+    public List<String> requestedFormats() {
+        List<String> requested = formats != null && !formats.isEmpty() ? formats : List.of(format);
+        return requested.stream().map(f -> f.toLowerCase(Locale.ROOT)).distinct().toList();
+    }
+}
@@ -0,0 +1,26 @@
+package com.mousty.convify_api.exception;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * An external tool exited with an error or did not finish in time.
+ * Carries the tail of the tool's stderr so callers can report what actually went wrong.
+ */
+@Getter
+public class ProcessExecutionException extends IOException {
+    private final List<String> command;
+    private final int exitCode;
+    private final String stderrTail;
+    private final boolean retryable;
+
+    public ProcessExecutionException(String message, List<String> command, int exitCode, String stderrTail, boolean retryable) {
+        super(message);
+        this.command = List.copyOf(command);
+        this.exitCode = exitCode;
+        this.stderrTail = stderrTail;
+        this.retryable = retryable;
+    }
+}
@@ -0,0 +1,13 @@
+package com.mousty.convify_api.exception;
+
+import java.util.List;
+
+/**
+ * An external tool was killed for exceeding its time limit. Not retryable: a run that already
+ * used its whole budget would most likely hold a worker for another full timeout.
+ */
+public class ProcessTimeoutException extends ProcessExecutionException {
+    public ProcessTimeoutException(String message, List<String> command, String stderrTail) {
+        super(message, command, -1, stderrTail, false);
+    }
+}
@@ -0,0 +1,11 @@
+package com.mousty.convify_api.exception;
+
+/**
+ * The YouTube Data API answered but did not return the video, so it is deleted, private or
+ * the id is wrong. Unlike an API outage this is definitive and no fallback is attempted.
+ */
+public class VideoNotFoundException extends Exception {
+    public VideoNotFoundException(String videoId) {
+        super("Video not found: " + videoId);
+    }
+}
@@ -0,0 +1,57 @@
+package com.mousty.convify_api.exception;
+
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Known yt-dlp failure causes, recognised from its stderr.
+ * {@code retryable} marks transient causes worth another attempt.
+ */
+@Getter
+public enum YtDlpError {
+    PRIVATE_VIDEO("Video is private", false,
+            "private video"),
+    AGE_RESTRICTED("Video is age-restricted", false,
+            "confirm your age", "age-restricted", "inappropriate for some users"),
+    MEMBERS_ONLY("Video is for channel members only", false,
+            "members-only", "join this channel"),
+    GEO_RESTRICTED("Video is not available in the server's region", false,
+            "available in your country", "geo restriction", "geo-restricted"),
+    VIDEO_UNAVAILABLE("Video is unavailable", false,
+            "video unavailable", "this video has been removed", "this video is not available",
+            "this video is no longer available", "does not exist"),
+    LIVE_STREAM("Live streams cannot be converted", false,
+            "this live event will begin", "is currently live", "premieres in"),
+    FORMAT_UNAVAILABLE("Requested format is not available", false,
+            "requested format is not available"),
+    BOT_CHECK("YouTube requested a bot check", true,
+            "not a bot"),
+    RATE_LIMITED("YouTube rate limited the server", true,
+            "http error 429", "too many requests"),
+    NETWORK("Network error while downloading", true,
+            "unable to download webpage", "unable to download video data", "connection reset",
+            "connection refused", "timed out", "temporary failure in name resolution",
+            "http error 5", "incomplete read", "giving up after"),
+    UNKNOWN("Download failed", false);
+
+    private final String description;
+    private final boolean retryable;
+    private final List<String> signatures;
+
+    YtDlpError(String description, boolean retryable, String... signatures) {
+        this.description = description;
+        this.retryable = retryable;
+        this.signatures = List.of(signatures);
+    }
+
+    public static YtDlpError classify(String stderr) {
+        if (stderr == null) return UNKNOWN;
+        String text = stderr.toLowerCase(Locale.ROOT);
+        for (YtDlpError error : values()) {
+            if (error.signatures.stream().anyMatch(text::contains)) return error;
+        }
+        return UNKNOWN;
+    }
+}
@@ -0,0 +1,33 @@
+package com.mousty.convify_api.exception;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * yt-dlp exited with an error. The message combines the classified cause with
+ * yt-dlp's own last error line.
+ */
+@Getter
+public class YtDlpException extends ProcessExecutionException {
+    private final YtDlpError error;
+
+    public YtDlpException(YtDlpError error, List<String> command, int exitCode, String stderrTail) {
+        super(message(error, stderrTail), command, exitCode, stderrTail, error.isRetryable());
+        this.error = error;
+    }
+
+    private static String message(YtDlpError error, String stderrTail) {
+        String detail = lastErrorLine(stderrTail);
+        return detail == null ? error.getDescription() : error.getDescription() + ": " + detail;
+    }
+
+    private static String lastErrorLine(String stderrTail) {
+        if (stderrTail == null || stderrTail.isBlank()) return null;
+        String[] lines = stderrTail.strip().split("\n");
+        for (int i = lines.length - 1; i >= 0; i--) {
+            if (lines[i].startsWith("ERROR:")) return lines[i].strip();
+        }
+        return lines[lines.length - 1].strip();
+    }
+}
@@ -1,40 +1,55 @@
 package com.mousty.convify_api.health;
 
+import com.mousty.convify_api.process.ProcessOutputListener;
+import com.mousty.convify_api.process.ProcessResult;
+import com.mousty.convify_api.process.ProcessRunner;
+import com.mousty.convify_api.service.YouTubeMetadataService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.health.contributor.Health;
 import org.springframework.boot.health.contributor.HealthIndicator;
 import org.springframework.stereotype.Component;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.time.Duration;
+import java.util.List;
 
 @Component
 public class YouTubeHealthIndicator implements HealthIndicator {
 
     private static final Logger log = LoggerFactory.getLogger(YouTubeHealthIndicator.class);
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final ProcessRunner processRunner;
+    private final YouTubeMetadataService metadataService;
+
+    @Value("${youtube.tools.yt-dlp-path:yt-dlp}")
+    private String ytDlpPath;
+
+    public YouTubeHealthIndicator(ProcessRunner processRunner, YouTubeMetadataService metadataService) {
+        this.processRunner = processRunner;
+        this.metadataService = metadataService;
+    }
 
     @Override
     public Health health() {
         try {
             // Check yt-dlp is available
-            ProcessBuilder pb = new ProcessBuilder("yt-dlp", "--version");
-            Process process = pb.start();
-            
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String version = reader.readLine();
-                int exitCode = process.waitFor();
-                
-                if (exitCode == 0) {
-                    return Health.up()
-                            .withDetail("yt-dlp", "available")
-                            .withDetail("version", version)
-                            .build();
-                } else {
-                    return Health.down()
-                            .withDetail("yt-dlp", "not available")
-                            .build();
-                }
+            ProcessResult result = processRunner.run(List.of(ytDlpPath, "--version"), TIMEOUT, ProcessOutputListener.NONE);
+
+            // An open Data API circuit only degrades titles, so it is reported but stays UP
+            if (result.isSuccess()) {
+                return Health.up()
+                        .withDetail("yt-dlp", "available")
+                        .withDetail("version", result.stdoutTail().strip())
+                        .withDetail("data-api-circuit", metadataService.getCircuitState())
+                        .withDetail("data-api-quota-remaining", metadataService.getQuotaRemaining())
+                        .build();
+            } else {
+                return Health.down()
+                        .withDetail("yt-dlp", "not available")
+                        .withDetail("stderr", result.stderrTail())
+                        .build();
             }
         } catch (Exception e) {
             log.error("Health check failed", e);
@@ -4,6 +4,8 @@ import lombok.Getter;
 import lombok.Setter;
 
 import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 @Getter
 @Setter
@@ -11,19 +13,50 @@ public class ConversionJob {
     private final String jobId;
     private final String url;
     private final String format;
+    private final List<String> formats;
+    private final String callbackUrl;
     private ConversionStatus status;
     private String videoId;
     private String videoTitle;
     private String filePath;
+    private final List<ConversionOutput> outputs = new CopyOnWriteArrayList<>();
     private String errorMessage;
     private final Instant createdAt;
     private Instant completedAt;
 
-    public ConversionJob(String jobId, String url, String format) {
+    // Playlist / channel jobs: the parent tracks its children and aggregates their progress
+    private boolean collection;
+    private String parentJobId;
+    private final List<String> childJobIds = new CopyOnWriteArrayList<>();
+    private volatile Integer totalItems;
+    private volatile int completedItems;
+    private volatile int failedItems;
+
+    public ConversionJob(String jobId, String url, String format, String callbackUrl) {
+        this(jobId, url, List.of(format), callbackUrl);
+    }
+
+    /**
+     * A job producing several formats from one download; {@code format} is the first of them
+     */
+    public ConversionJob(String jobId, String url, List<String> formats, String callbackUrl) {
         this.jobId = jobId;
         this.url = url;
-        this.format = format;
+        this.format = formats.getFirst();
+        this.formats = List.copyOf(formats);
+        this.callbackUrl = callbackUrl;
         this.status = ConversionStatus.PENDING;
         this.createdAt = Instant.now();
     }
+
+    /**
+     * Fraction of child jobs that have finished, or null for single-video jobs.
+     * While the playlist is still being expanded the total is the number discovered so far.
+     */
+    public Double getProgress() {
+        if (!collection) return null;
+        int total = totalItems != null ? totalItems : childJobIds.size();
+        if (total == 0) return totalItems != null ? 1.0 : 0.0;
+        return (double) (completedItems + failedItems) / total;
+    }
 }
@@ -0,0 +1,11 @@
+package com.mousty.convify_api.model;
+
+/**
+ * One produced file of a conversion job. Exactly one of {@code filePath} and
+ * {@code errorMessage} is set.
+ */
+public record ConversionOutput(
+        String format,
+        String filePath,
+        String errorMessage
+) {}
@@ -0,0 +1,21 @@
+package com.mousty.convify_api.model;
+
+import java.time.Instant;
+
+/**
+ * A pending webhook notification held in the outbox until the receiver acknowledges it.
+ * {@code payload} is the serialized event; several deliveries to the same URL may be sent in one batch.
+ */
+public record WebhookDelivery(
+        String id,
+        String jobId,
+        String callbackUrl,
+        String payload,
+        int attempts,
+        Instant createdAt,
+        Instant nextAttemptAt
+) {
+    public WebhookDelivery retryAt(Instant next) {
+        return new WebhookDelivery(id, jobId, callbackUrl, payload, attempts + 1, createdAt, next);
+    }
+}
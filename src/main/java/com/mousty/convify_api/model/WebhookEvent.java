@@ -0,0 +1,76 @@
+package com.mousty.convify_api.model;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Body of a single job notification sent to a client's callback URL.
+ * <p>
+ * For a playlist or channel job the event also carries the fan-out totals and the outcome of
+ * every child, so the receiver does not have to poll the children; these fields are null for
+ * single-video jobs. A collection that completed with some failed children is reported as
+ * {@code conversion.partially_completed}.
+ */
+public record WebhookEvent(
+        String event,
+        String jobId,
+        ConversionStatus status,
+        String url,
+        String format,
+        String videoId,
+        String videoTitle,
+        String filePath,
+        List<ConversionOutput> outputs,
+        String errorMessage,
+        Instant createdAt,
+        Instant completedAt,
+        Integer totalItems,
+        Integer completedItems,
+        Integer failedItems,
+        Double progress,
+        List<Child> children
+) {
+    /**
+     * Outcome of one video of a playlist or channel job
+     */
+    public record Child(
+            String jobId,
+            String videoId,
+            String videoTitle,
+            ConversionStatus status,
+            String filePath,
+            List<ConversionOutput> outputs,
+            String errorMessage
+    ) {
+        static Child of(ConversionJob job) {
+            return new Child(job.getJobId(), job.getVideoId(), job.getVideoTitle(), job.getStatus(),
+                    job.getFilePath(), List.copyOf(job.getOutputs()), job.getErrorMessage());
+        }
+    }
+
+    public static WebhookEvent of(ConversionJob job) {
+        return of(job, List.of());
+    }
+
+    /**
+     * @param children the child jobs of a collection job, in playlist order; ignored otherwise
+     */
+    public static WebhookEvent of(ConversionJob job, List<ConversionJob> children) {
+        if (!job.isCollection()) {
+            return new WebhookEvent(eventName(job), job.getJobId(), job.getStatus(), job.getUrl(), job.getFormat(),
+                    job.getVideoId(), job.getVideoTitle(), job.getFilePath(), List.copyOf(job.getOutputs()),
+                    job.getErrorMessage(), job.getCreatedAt(), job.getCompletedAt(),
+                    null, null, null, null, null);
+        }
+        return new WebhookEvent(eventName(job), job.getJobId(), job.getStatus(), job.getUrl(), job.getFormat(),
+                job.getVideoId(), job.getVideoTitle(), job.getFilePath(), List.copyOf(job.getOutputs()),
+                job.getErrorMessage(), job.getCreatedAt(), job.getCompletedAt(),
+                job.getTotalItems(), job.getCompletedItems(), job.getFailedItems(), job.getProgress(),
+                children.stream().map(Child::of).toList());
+    }
+
+    private static String eventName(ConversionJob job) {
+        if (job.getStatus() != ConversionStatus.COMPLETED) return "conversion.failed";
+        return job.isCollection() && job.getFailedItems() > 0 ? "conversion.partially_completed" : "conversion.completed";
+    }
+}
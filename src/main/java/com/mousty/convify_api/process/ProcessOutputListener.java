@@ -0,0 +1,14 @@
+package com.mousty.convify_api.process;
+
+/**
+ * Receives a child process's output line by line while it runs.
+ * Callbacks are invoked from the draining threads, one per stream.
+ */
+public interface ProcessOutputListener {
+
+    ProcessOutputListener NONE = new ProcessOutputListener() {};
+
+    default void onStdout(String line) {}
+
+    default void onStderr(String line) {}
+}
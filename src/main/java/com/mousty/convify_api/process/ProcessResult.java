@@ -0,0 +1,11 @@
+package com.mousty.convify_api.process;
+
+/**
+ * Outcome of a finished child process, with the tail of each output stream.
+ */
+public record ProcessResult(int exitCode, String stdoutTail, String stderrTail) {
+
+    public boolean isSuccess() {
+        return exitCode == 0;
+    }
+}
@@ -0,0 +1,102 @@
+package com.mousty.convify_api.process;
+
+import com.mousty.convify_api.exception.ProcessTimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs external tools such as yt-dlp and ffmpeg.
+ * <p>
+ * Both stdout and stderr are drained on virtual threads for the whole lifetime of the process,
+ * so a chatty child can never block on a full pipe. Each line is forwarded to the
+ * {@link ProcessOutputListener} and the last few KB of each stream are kept for error reporting.
+ */
+@Component
+public class ProcessRunner {
+    private static final Logger log = LoggerFactory.getLogger(ProcessRunner.class);
+
+    private static final Duration DRAIN_GRACE = Duration.ofSeconds(5);
+
+    private final int stdoutTailChars;
+    private final int stderrTailChars;
+
+    public ProcessRunner(@Value("${youtube.process.stdout-tail-kb:4}") int stdoutTailKb,
+                         @Value("${youtube.process.stderr-tail-kb:16}") int stderrTailKb) {
+        this.stdoutTailChars = stdoutTailKb * 1024;
+        this.stderrTailChars = stderrTailKb * 1024;
+    }
+
+    /**
+     * Run a command to completion and return its exit code and output tails.
+     * A non-zero exit code is not an error here; callers decide how to interpret it.
+     *
+     * @throws ProcessTimeoutException if the process does not finish within {@code timeout}
+     */
+    public ProcessResult run(List<String> command, Duration timeout, ProcessOutputListener listener)
+            throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command).start();
+        process.getOutputStream().close();
+
+        TailBuffer stdoutTail = new TailBuffer(stdoutTailChars);
+        TailBuffer stderrTail = new TailBuffer(stderrTailChars);
+        Thread stdout = drain(process.getInputStream(), "stdout-" + process.pid(), line -> {
+            stdoutTail.append(line);
+            listener.onStdout(line);
+        });
+        Thread stderr = drain(process.getErrorStream(), "stderr-" + process.pid(), line -> {
+            stderrTail.append(line);
+            listener.onStderr(line);
+        });
+
+        boolean finished = false;
+        try {
+            finished = process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } finally {
+            if (!finished) kill(process);
+            // Grandchildren (e.g. ffmpeg spawned by yt-dlp) can keep the pipes open, so don't wait forever
+            stdout.join(DRAIN_GRACE);
+            stderr.join(DRAIN_GRACE);
+        }
+
+        if (!finished) {
+            throw new ProcessTimeoutException("Command timed out after " + timeout.toSeconds() + "s",
+                    command, stderrTail.toString());
+        }
+
+        return new ProcessResult(process.exitValue(), stdoutTail.toString(), stderrTail.toString());
+    }
+
+    private static Thread drain(InputStream stream, String name, Consumer<String> onLine) {
+        return Thread.ofVirtual().name("proc-" + name).start(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    try {
+                        onLine.accept(line);
+                    } catch (RuntimeException e) {
+                        log.warn("Process output listener failed: {}", e.getMessage());
+                    }
+                }
+            } catch (IOException e) {
+                // Stream closed because the process was killed
+            }
+        });
+    }
+
+    private static void kill(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+}
@@ -0,0 +1,35 @@
+package com.mousty.convify_api.process;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Keeps the most recent lines of a stream up to a fixed number of characters,
+ * dropping the oldest lines first.
+ */
+class TailBuffer {
+
+    private final int maxChars;
+    private final Deque<String> lines = new ArrayDeque<>();
+    private int size;
+
+    TailBuffer(int maxChars) {
+        this.maxChars = maxChars;
+    }
+
+    synchronized void append(String line) {
+        if (line.length() > maxChars) {
+            line = line.substring(line.length() - maxChars);
+        }
+        lines.addLast(line);
+        size += line.length() + 1;
+        while (size > maxChars && lines.size() > 1) {
+            size -= lines.removeFirst().length() + 1;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.join("\n", lines);
+    }
+}
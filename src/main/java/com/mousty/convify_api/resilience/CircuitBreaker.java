@@ -0,0 +1,90 @@
+package com.mousty.convify_api.resilience;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Consecutive-failure circuit breaker.
+ * <p>
+ * After {@code failureThreshold} failures in a row the breaker opens and {@link #tryAcquire}
+ * rejects calls for {@code openDuration}. It then lets a single trial call through
+ * (half-open): success closes it again, failure re-opens it for another full period.
+ */
+public class CircuitBreaker {
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration) {
+        this(name, failureThreshold, openDuration, System::nanoTime);
+    }
+
+    CircuitBreaker(String name, int failureThreshold, Duration openDuration, LongSupplier nanoClock) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openDuration.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * @return whether a call may proceed; every permitted call must be followed by
+     * {@link #onSuccess} or {@link #onFailure}
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (nanoClock.getAsLong() - openedAt < openNanos) return false;
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) return false;
+            trialInFlight = true;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        if (state != State.CLOSED) transition(State.CLOSED);
+    }
+
+    public synchronized void onFailure() {
+        trialInFlight = false;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) trip();
+    }
+
+    /**
+     * Open immediately regardless of the failure count, e.g. when the remote side reports
+     * that retrying is pointless for a while
+     */
+    public synchronized void trip() {
+        openedAt = nanoClock.getAsLong();
+        trialInFlight = false;
+        if (state != State.OPEN) transition(State.OPEN);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void transition(State next) {
+        log.info("Circuit breaker '{}' {} -> {}", name, state, next);
+        state = next;
+    }
+}
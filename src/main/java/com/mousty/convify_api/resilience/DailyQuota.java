@@ -0,0 +1,66 @@
+package com.mousty.convify_api.resilience;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Unit budget that resets at midnight in a fixed time zone, matching how the YouTube Data API
+ * meters its daily quota (midnight Pacific time).
+ */
+public class DailyQuota {
+    private final long limit;
+    private final Clock clock;
+
+    private LocalDate day;
+    private long used;
+
+    public DailyQuota(long limit, ZoneId zone) {
+        this(limit, Clock.system(zone));
+    }
+
+    DailyQuota(long limit, Clock clock) {
+        this.limit = limit;
+        this.clock = clock;
+        this.day = LocalDate.now(clock);
+    }
+
+    /**
+     * Reserve {@code units} from today's budget.
+     *
+     * @return false without reserving anything if the budget would be exceeded
+     */
+    public synchronized boolean tryConsume(long units) {
+        roll();
+        if (used + units > limit) return false;
+        used += units;
+        return true;
+    }
+
+    /**
+     * Mark today's budget as spent, e.g. after the API reported {@code quotaExceeded}
+     * while the local count still had room
+     */
+    public synchronized void exhaust() {
+        roll();
+        used = Math.max(used, limit);
+    }
+
+    public synchronized long used() {
+        roll();
+        return used;
+    }
+
+    public synchronized long remaining() {
+        roll();
+        return Math.max(0, limit - used);
+    }
+
+    private void roll() {
+        LocalDate today = LocalDate.now(clock);
+        if (!today.equals(day)) {
+            day = today;
+            used = 0;
+        }
+    }
+}
@@ -1,12 +1,18 @@
 package com.mousty.convify_api.service;
 
+import com.mousty.convify_api.exception.ProcessExecutionException;
+import com.mousty.convify_api.exception.ProcessTimeoutException;
+import com.mousty.convify_api.exception.VideoNotFoundException;
+import com.mousty.convify_api.exception.YtDlpException;
 import com.mousty.convify_api.model.*;
 import io.micrometer.core.instrument.*;
 import io.micrometer.core.instrument.Timer;
 import org.slf4j.*;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.*;
@@ -18,55 +24,300 @@ public class ConversionManagerService {
     private final YouTubeMetadataService metadataService;
     private final VideoDownloadService downloadService;
     private final FileStorageService storageService;
+    private final WebhookDeliveryService webhookService;
+
+    private static final String WATCH_URL = "https://www.youtube.com/watch?v=";
+    // Queued after the last id of a listing; yt-dlp never prints empty ids
+    private static final String END_OF_LISTING = "";
 
     private final Map<String, ConversionJob> jobs = new ConcurrentHashMap<>();
     private final ExecutorService executor = Executors.newFixedThreadPool(5);
+    private final ExecutorService expansionExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final int maxRetries;
+    private final long retryBackoffMs;
+    private final int maxPlaylistItems;
+    private final int maxParallelChildren;
+    private final int metadataBatchSize;
 
+    private final MeterRegistry registry;
     private final Counter successCounter;
+    private final Counter retryCounter;
+    private final Counter playlistItemCounter;
     private final Timer timer;
 
-    public ConversionManagerService(YouTubeMetadataService ms, VideoDownloadService ds, FileStorageService fs, MeterRegistry reg) {
+    public ConversionManagerService(YouTubeMetadataService ms, VideoDownloadService ds, FileStorageService fs,
+                                    WebhookDeliveryService ws, MeterRegistry reg,
+                                    @Value("${youtube.download.max-retries:2}") int maxRetries,
+                                    @Value("${youtube.download.retry-backoff-ms:5000}") long retryBackoffMs,
+                                    @Value("${youtube.playlist.max-items:200}") int maxPlaylistItems,
+                                    @Value("${youtube.playlist.max-parallel-children:2}") int maxParallelChildren,
+                                    @Value("${youtube.playlist.metadata-batch-size:50}") int metadataBatchSize) {
         this.metadataService = ms;
         this.downloadService = ds;
         this.storageService = fs;
+        this.webhookService = ws;
+        this.maxRetries = maxRetries;
+        this.retryBackoffMs = retryBackoffMs;
+        this.maxPlaylistItems = maxPlaylistItems;
+        this.maxParallelChildren = maxParallelChildren;
+        this.metadataBatchSize = metadataBatchSize;
+        this.registry = reg;
         this.successCounter = reg.counter("conversion.success");
+        this.retryCounter = reg.counter("conversion.retry");
+        this.playlistItemCounter = reg.counter("conversion.playlist.items");
         this.timer = reg.timer("conversion.duration");
     }
 
-    public String startConversion(String url, String format) {
+    public String startConversion(String url, List<String> formats, String callbackUrl) {
+        if (callbackUrl != null) webhookService.validateCallbackUrl(callbackUrl);
         String jobId = UUID.randomUUID().toString();
-        ConversionJob job = new ConversionJob(jobId, url, format);
+        ConversionJob job = new ConversionJob(jobId, url, formats, callbackUrl);
         jobs.put(jobId, job);
 
-        executor.submit(() -> processJob(job));
+        if (metadataService.isCollectionUrl(url)) {
+            job.setCollection(true);
+            expansionExecutor.submit(() -> expandCollection(job));
+        } else {
+            executor.submit(() -> processJob(job));
+        }
         return jobId;
     }
 
+    /**
+     * Children of one playlist waiting to run, and the executor slots they may occupy at once,
+     * so a large playlist cannot crowd out other clients' jobs
+     */
+    private static final class Fanout {
+        private final ConversionJob parent;
+        private final Queue<ConversionJob> pending = new ConcurrentLinkedQueue<>();
+        private final Semaphore slots;
+
+        private Fanout(ConversionJob parent, int slots) {
+            this.parent = parent;
+            this.slots = new Semaphore(slots);
+        }
+    }
+
+    /**
+     * List the playlist's videos and start child jobs as ids arrive, resolving titles
+     * one batch at a time instead of one API call per video.
+     * <p>
+     * yt-dlp's output listener only queues ids; batching, title lookups and job creation happen
+     * on this thread so they never hold up the process's output drain. Whatever has queued up
+     * while a batch was being handled becomes the next batch.
+     */
+    private void expandCollection(ConversionJob parent) {
+        MDC.put("jobId", parent.getJobId());
+        Fanout fanout = new Fanout(parent, maxParallelChildren);
+        BlockingQueue<String> videoIds = new LinkedBlockingQueue<>();
+        try {
+            parent.setStatus(ConversionStatus.PROCESSING);
+            Future<?> listing = expansionExecutor.submit(() -> {
+                try {
+                    downloadService.expandCollection(metadataService.collectionUrl(parent.getUrl()), maxPlaylistItems,
+                            videoIds::add);
+                    return null;
+                } finally {
+                    videoIds.add(END_OF_LISTING);
+                }
+            });
+
+            List<String> batch = new ArrayList<>();
+            boolean done = false;
+            while (!done) {
+                batch.add(videoIds.take());
+                videoIds.drainTo(batch, Math.max(0, metadataBatchSize - 1));
+                // Ids printed after the listing returned (a drain thread outliving its grace period) are ignored
+                int end = batch.indexOf(END_OF_LISTING);
+                if (end >= 0) {
+                    batch.subList(end, batch.size()).clear();
+                    done = true;
+                }
+                addChildren(fanout, batch);
+                batch.clear();
+            }
+            listing.get();
+        } catch (Exception e) {
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            log.warn("Playlist expansion failed: {}", cause.getMessage());
+            parent.setErrorMessage(cause.getMessage());
+        } finally {
+            parent.setTotalItems(parent.getChildJobIds().size());
+            checkCollectionDone(parent);
+            MDC.remove("jobId");
+        }
+    }
+
+    private void addChildren(Fanout fanout, List<String> videoIds) {
+        if (videoIds.isEmpty()) return;
+        ConversionJob parent = fanout.parent;
+
+        Map<String, String> titles = null;
+        try {
+            titles = metadataService.fetchVideoTitles(videoIds);
+        } catch (Exception e) {
+            log.warn("Batch title lookup failed, children will resolve titles individually: {}", e.getMessage());
+        }
+
+        for (String videoId : videoIds) {
+            ConversionJob child = new ConversionJob(UUID.randomUUID().toString(), WATCH_URL + videoId, parent.getFormats(), null);
+            child.setParentJobId(parent.getJobId());
+            child.setVideoId(videoId);
+            jobs.put(child.getJobId(), child);
+            parent.getChildJobIds().add(child.getJobId());
+            playlistItemCounter.increment();
+
+            if (titles != null && !titles.containsKey(videoId)) {
+                // Deleted and private playlist entries are not returned by the API
+                child.setStatus(ConversionStatus.FAILED);
+                child.setErrorMessage("Video not found: " + videoId);
+                child.setCompletedAt(Instant.now());
+                onChildFinished(parent, child);
+            } else {
+                fanout.pending.add(child);
+            }
+        }
+        dispatchChildren(fanout);
+    }
+
+    private void dispatchChildren(Fanout fanout) {
+        while (fanout.slots.tryAcquire()) {
+            ConversionJob child = fanout.pending.poll();
+            if (child == null) {
+                fanout.slots.release();
+                // A child may have been queued between poll() and release()
+                if (fanout.pending.isEmpty()) return;
+                continue;
+            }
+            executor.submit(() -> {
+                try {
+                    processJob(child);
+                } finally {
+                    fanout.slots.release();
+                    onChildFinished(fanout.parent, child);
+                    dispatchChildren(fanout);
+                }
+            });
+        }
+    }
+
+    private void onChildFinished(ConversionJob parent, ConversionJob child) {
+        synchronized (parent) {
+            if (child.getStatus() == ConversionStatus.COMPLETED) {
+                parent.setCompletedItems(parent.getCompletedItems() + 1);
+            } else {
+                parent.setFailedItems(parent.getFailedItems() + 1);
+            }
+        }
+        checkCollectionDone(parent);
+    }
+
+    /**
+     * Complete the parent once expansion has finished and every child is terminal.
+     * The parent succeeds if at least one child did.
+     */
+    private void checkCollectionDone(ConversionJob parent) {
+        synchronized (parent) {
+            Integer total = parent.getTotalItems();
+            if (total == null || parent.getCompletedAt() != null) return;
+            if (parent.getCompletedItems() + parent.getFailedItems() < total) return;
+
+            parent.setStatus(parent.getCompletedItems() > 0 ? ConversionStatus.COMPLETED : ConversionStatus.FAILED);
+            if (parent.getErrorMessage() == null) {
+                if (total == 0) parent.setErrorMessage("No videos found");
+                else if (parent.getFailedItems() > 0) parent.setErrorMessage(parent.getFailedItems() + " of " + total + " videos failed");
+            }
+            parent.setCompletedAt(Instant.now());
+        }
+        if (parent.getCallbackUrl() != null) {
+            webhookService.enqueue(parent, parent.getChildJobIds().stream().map(jobs::get).filter(Objects::nonNull).toList());
+        }
+    }
+
     private void processJob(ConversionJob job) {
         Timer.Sample sample = Timer.start();
         MDC.put("jobId", job.getJobId());
         try {
             job.setStatus(ConversionStatus.PROCESSING);
             String videoId = metadataService.extractVideoId(job.getUrl());
-            String title = metadataService.fetchVideoTitle(videoId);
+            job.setVideoId(videoId);
+            String title = metadataService.resolveVideoTitle(videoId, job.getUrl());
 
             storageService.checkDiskSpace();
-            var path = downloadService.download(job.getUrl(), job.getFormat(), title, storageService.getDownloadFolder());
-
-            job.setFilePath(path.toString());
             job.setVideoTitle(title);
-            job.setStatus(ConversionStatus.COMPLETED);
-            successCounter.increment();
+            if (job.getFormats().size() > 1) {
+                completeMultiFormat(job, downloadWithRetry(() -> downloadService.downloadMultiFormat(job.getUrl(), videoId,
+                        job.getFormats(), title, storageService.getDownloadFolder(), storageService.getWorkFolder())));
+            } else {
+                var path = downloadWithRetry(() -> downloadService.download(job.getUrl(), job.getFormat(), title,
+                        storageService.getDownloadFolder()));
+                job.setFilePath(path.toString());
+                job.getOutputs().add(new ConversionOutput(job.getFormat(), path.toString(), null));
+                job.setStatus(ConversionStatus.COMPLETED);
+            }
+            if (job.getStatus() == ConversionStatus.COMPLETED) successCounter.increment();
+            else registry.counter("conversion.failure", "reason", "OUTPUT").increment();
         } catch (Exception e) {
+            log.warn("Conversion failed: {}", e.getMessage());
             job.setStatus(ConversionStatus.FAILED);
             job.setErrorMessage(e.getMessage());
+            registry.counter("conversion.failure", "reason", failureReason(e)).increment();
         } finally {
             job.setCompletedAt(Instant.now());
             sample.stop(timer);
+            if (job.getCallbackUrl() != null) webhookService.enqueue(job);
             MDC.remove("jobId");
         }
     }
 
+    @FunctionalInterface
+    private interface DownloadAttempt<T> {
+        T run() throws Exception;
+    }
+
+    /**
+     * Download, retrying with linear backoff while yt-dlp reports a transient failure.
+     * Timeouts are not retried, so one stuck video holds a worker for at most one timeout
+     */
+    private <T> T downloadWithRetry(DownloadAttempt<T> attempt) throws Exception {
+        for (int n = 1; ; n++) {
+            try {
+                return attempt.run();
+            } catch (ProcessExecutionException e) {
+                if (!e.isRetryable() || n > maxRetries) throw e;
+                log.warn("Download attempt {} failed, retrying: {}", n, e.getMessage());
+                retryCounter.increment();
+                Thread.sleep(retryBackoffMs * n);
+            }
+        }
+    }
+
+    /**
+     * The job succeeds if any format was produced; failed formats are listed in the error message
+     */
+    private void completeMultiFormat(ConversionJob job, List<ConversionOutput> outputs) {
+        job.getOutputs().addAll(outputs);
+        outputs.stream().filter(o -> o.filePath() != null).findFirst()
+                .ifPresent(o -> job.setFilePath(o.filePath()));
+
+        List<String> failures = outputs.stream()
+                .filter(o -> o.errorMessage() != null)
+                .map(o -> o.format() + ": " + o.errorMessage())
+                .toList();
+        if (!failures.isEmpty()) job.setErrorMessage(String.join("; ", failures));
+        job.setStatus(job.getFilePath() != null ? ConversionStatus.COMPLETED : ConversionStatus.FAILED);
+    }
+
+    private static String failureReason(Exception e) {
+        if (e instanceof VideoNotFoundException) return "NOT_FOUND";
+        if (e instanceof YtDlpException ytDlp) return ytDlp.getError().name();
+        if (e instanceof ProcessTimeoutException) return "TIMEOUT";
+        if (e instanceof ProcessExecutionException) return "PROCESS";
+        return "OTHER";
+    }
+
     public ConversionJob getStatus(String jobId) {
         return Optional.ofNullable(jobs.get(jobId))
                 .orElseThrow(() -> new IllegalArgumentException("Job not found"));
@@ -0,0 +1,195 @@
+package com.mousty.convify_api.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.micrometer.core.instrument.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams converted files to clients under egress limits.
+ * <p>
+ * Every chunk takes tokens (bytes) from the client's own bucket and then from a global bucket,
+ * so one fast client cannot take the whole uplink and the node's total egress stays capped.
+ * A client may only hold a few transfers at once. A client that stops reading is cut off by the
+ * servlet container's socket write timeout, which {@code DeliveryConfig} sets from
+ * {@code youtube.delivery.write-timeout-seconds}.
+ */
+@Service
+public class FileDeliveryService {
+    private static final Logger log = LoggerFactory.getLogger(FileDeliveryService.class);
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int TOP_CLIENTS = 20;
+
+    private final Bucket globalBucket;
+    private final long perClientBytesPerSecond;
+    private final int maxTransfersPerClient;
+    private final int chunkSize;
+
+    private final Cache<String, ClientEgress> clients;
+    private final AtomicInteger activeTransfers = new AtomicInteger();
+
+    private final Counter egressCounter;
+    private final Counter writeTimeoutCounter;
+    private final MultiGauge clientEgressBytes;
+    private final MultiGauge clientActiveTransfers;
+
+    public FileDeliveryService(MeterRegistry reg,
+                               @Value("${youtube.delivery.global-bytes-per-second:104857600}") long globalBytesPerSecond,
+                               @Value("${youtube.delivery.client-bytes-per-second:5242880}") long perClientBytesPerSecond,
+                               @Value("${youtube.delivery.max-transfers-per-client:4}") int maxTransfersPerClient) {
+        this.globalBucket = globalBytesPerSecond > 0 ? bytesPerSecond(globalBytesPerSecond) : null;
+        this.perClientBytesPerSecond = perClientBytesPerSecond;
+        this.maxTransfersPerClient = maxTransfersPerClient;
+        // A chunk larger than a bucket's capacity could never be granted
+        this.chunkSize = (int) Math.min(CHUNK_SIZE, Math.min(
+                globalBytesPerSecond > 0 ? globalBytesPerSecond : CHUNK_SIZE,
+                perClientBytesPerSecond > 0 ? perClientBytesPerSecond : CHUNK_SIZE));
+        this.clients = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+
+        this.egressCounter = reg.counter("download.egress.bytes");
+        this.writeTimeoutCounter = reg.counter("download.write.timeouts");
+        reg.gauge("download.transfers.active", activeTransfers);
+        this.clientEgressBytes = MultiGauge.builder("download.client.egress.bytes")
+                .description("Bytes sent to the most active clients")
+                .register(reg);
+        this.clientActiveTransfers = MultiGauge.builder("download.client.transfers.active")
+                .description("Transfers in progress for the most active clients")
+                .register(reg);
+    }
+
+    /**
+     * Reserve a transfer slot for the client and return the body that streams the file,
+     * or empty if the client already has the maximum number of transfers in progress.
+     * The slot is freed when the body finishes or the current request completes.
+     */
+    public Optional<StreamingResponseBody> stream(Path file, String clientId) {
+        ClientEgress client = clients.get(clientId, id -> new ClientEgress(
+                perClientBytesPerSecond > 0 ? bytesPerSecond(perClientBytesPerSecond) : null));
+        if (client.active.incrementAndGet() > maxTransfersPerClient) {
+            client.active.decrementAndGet();
+            return Optional.empty();
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable releaseSlot = () -> {
+            if (released.compareAndSet(false, true)) client.active.decrementAndGet();
+        };
+        releaseOnRequestCompletion(releaseSlot);
+
+        return Optional.of(out -> {
+            activeTransfers.incrementAndGet();
+            try (InputStream in = Files.newInputStream(file)) {
+                byte[] buffer = new byte[chunkSize];
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    // Keep the client's bucket from expiring out of the cache mid-transfer
+                    clients.asMap().putIfAbsent(clientId, client);
+                    if (client.bucket != null) client.bucket.asBlocking().consume(read);
+                    if (globalBucket != null) globalBucket.asBlocking().consume(read);
+
+                    out.write(buffer, 0, read);
+                    egressCounter.increment(read);
+                    client.bytes.addAndGet(read);
+                }
+                out.flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Transfer interrupted", e);
+            } catch (IOException e) {
+                if (isWriteTimeout(e)) {
+                    log.warn("Aborted download to {}: client stopped reading", clientId);
+                    writeTimeoutCounter.increment();
+                }
+                throw e;
+            } finally {
+                activeTransfers.decrementAndGet();
+                releaseSlot.run();
+            }
+        });
+    }
+
+    /**
+     * The body only runs once Spring MVC dispatches it, which may never happen: the client can go
+     * away first, the executor can reject the task or the async request can time out. The slot is
+     * therefore also released when the request completes, whichever comes first.
+     */
+    private static void releaseOnRequestCompletion(Runnable release) {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            WebAsyncUtils.getAsyncManager(attributes.getRequest()).registerCallableInterceptor(release,
+                    new CallableProcessingInterceptor() {
+                        @Override
+                        public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+                            release.run();
+                        }
+                    });
+        }
+    }
+
+    // Tomcat reports a stalled blocking write as a ClientAbortException caused by SocketTimeoutException
+    private static boolean isWriteTimeout(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SocketTimeoutException) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Export egress for the top clients by bytes sent; tagging every client would be unbounded
+     */
+    @Scheduled(fixedDelayString = "${youtube.delivery.metrics-interval-ms:10000}")
+    public void publishClientMetrics() {
+        List<Map.Entry<String, ClientEgress>> top = clients.asMap().entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, ClientEgress> e) -> e.getValue().bytes.get()).reversed())
+                .limit(TOP_CLIENTS)
+                .toList();
+
+        clientEgressBytes.register(top.stream()
+                .map(e -> MultiGauge.Row.of(Tags.of("client", e.getKey()), e.getValue(), c -> c.bytes.get()))
+                .toList(), true);
+        clientActiveTransfers.register(top.stream()
+                .map(e -> MultiGauge.Row.of(Tags.of("client", e.getKey()), e.getValue(), c -> c.active.get()))
+                .toList(), true);
+    }
+
+    private static Bucket bytesPerSecond(long bytes) {
+        return Bucket.builder()
+                .addLimit(Bandwidth.builder().capacity(bytes).refillGreedy(bytes, Duration.ofSeconds(1)).build())
+                .build();
+    }
+
+    private static final class ClientEgress {
+        private final Bucket bucket;
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicInteger active = new AtomicInteger();
+
+        private ClientEgress(Bucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+}
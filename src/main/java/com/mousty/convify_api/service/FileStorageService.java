@@ -17,6 +17,11 @@ public class FileStorageService {
     private static final Logger log = LoggerFactory.getLogger(FileStorageService.class);
     @Getter
     private final Path downloadFolder;
+    /**
+     * Intermediate files shared between outputs; not downloadable
+     */
+    @Getter
+    private final Path workFolder;
 
     @Value("${youtube.download.min-disk-space-gb:1}")
     private long minDiskSpaceGb;
@@ -27,6 +32,8 @@ public class FileStorageService {
     public FileStorageService(@Value("${app.download.dir:/tmp/yt-downloads}") String dir) throws IOException {
         this.downloadFolder = Paths.get(dir).toAbsolutePath().normalize();
         if (!Files.exists(downloadFolder)) Files.createDirectories(downloadFolder);
+        this.workFolder = downloadFolder.resolve(".work");
+        if (!Files.exists(workFolder)) Files.createDirectories(workFolder);
     }
 
     public void checkDiskSpace() throws IOException {
@@ -52,7 +59,7 @@ public class FileStorageService {
 
     public Path validatePath(String filepath) {
         Path path = Paths.get(filepath).normalize();
-        if (!path.startsWith(downloadFolder)) throw new SecurityException("Invalid path");
+        if (!path.startsWith(downloadFolder) || path.startsWith(workFolder)) throw new SecurityException("Invalid path");
         return path;
     }
 }
\ No newline at end of file
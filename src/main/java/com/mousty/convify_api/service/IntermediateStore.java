@@ -0,0 +1,111 @@
+package com.mousty.convify_api.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Reference-counted intermediate files shared by several outputs.
+ * <p>
+ * The first {@link #acquire} for a key runs the loader; concurrent and later callers for the
+ * same key wait for and share its result. Each caller closes its {@link Lease} when done, and
+ * the file is deleted as soon as the last lease is closed.
+ */
+@Service
+public class IntermediateStore {
+    private static final Logger log = LoggerFactory.getLogger(IntermediateStore.class);
+
+    @FunctionalInterface
+    public interface Loader {
+        Path load() throws Exception;
+    }
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private static final class Entry {
+        private final CompletableFuture<Path> file = new CompletableFuture<>();
+        private int refs;
+    }
+
+    public Lease acquire(String key, Loader loader) throws Exception {
+        Entry entry;
+        boolean owner;
+        synchronized (entries) {
+            entry = entries.get(key);
+            owner = entry == null;
+            if (owner) {
+                entry = new Entry();
+                entries.put(key, entry);
+            }
+            entry.refs++;
+        }
+
+        if (owner) {
+            try {
+                entry.file.complete(loader.load());
+            } catch (Exception e) {
+                entry.file.completeExceptionally(e);
+            }
+        }
+
+        Lease lease = new Lease(key, entry);
+        try {
+            entry.file.get();
+        } catch (ExecutionException e) {
+            lease.close();
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } catch (InterruptedException e) {
+            lease.close();
+            throw e;
+        }
+        return lease;
+    }
+
+    private void release(String key, Entry entry) {
+        synchronized (entries) {
+            if (--entry.refs > 0) return;
+            entries.remove(key, entry);
+            // Still under the lock: a new acquire for the key must not load onto the same path
+            // before it is gone, or the loader would find the old file and the delete remove the new one
+            if (entry.file.isCompletedExceptionally()) return;
+            Path file = entry.file.getNow(null);
+            if (file == null) return;
+            try {
+                Files.deleteIfExists(file);
+                log.debug("Deleted intermediate {}", file.getFileName());
+            } catch (IOException e) {
+                log.warn("Failed to delete intermediate {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    public final class Lease implements AutoCloseable {
+        private final String key;
+        private final Entry entry;
+        private boolean closed;
+
+        private Lease(String key, Entry entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+
+        public Path path() {
+            return entry.file.join();
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            release(key, entry);
+        }
+    }
+}
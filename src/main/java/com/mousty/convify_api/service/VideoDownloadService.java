@@ -1,5 +1,12 @@
 package com.mousty.convify_api.service;
 
+import com.mousty.convify_api.exception.ProcessExecutionException;
+import com.mousty.convify_api.exception.YtDlpError;
+import com.mousty.convify_api.exception.YtDlpException;
+import com.mousty.convify_api.model.ConversionOutput;
+import com.mousty.convify_api.process.ProcessOutputListener;
+import com.mousty.convify_api.process.ProcessResult;
+import com.mousty.convify_api.process.ProcessRunner;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -7,25 +14,66 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 @Service
 public class VideoDownloadService {
     private static final Logger log = LoggerFactory.getLogger(VideoDownloadService.class);
+    private static final String DEFAULT_FFMPEG = "ffmpeg";
+    private static final Duration VERSION_CHECK_TIMEOUT = Duration.ofSeconds(30);
+    // yt-dlp's in-progress download, its fragments, and its resume state
+    private static final String PARTIAL_SUFFIX = "\\.part(?:-Frag\\d+)?|\\.ytdl";
+
+    private static final ProcessOutputListener DEBUG_LOGGER = new ProcessOutputListener() {
+        @Override
+        public void onStdout(String line) {
+            log.debug("yt-dlp: {}", line);
+        }
+
+        @Override
+        public void onStderr(String line) {
+            log.debug("yt-dlp stderr: {}", line);
+        }
+    };
+
     private final Semaphore semaphore;
+    private final ProcessRunner processRunner;
+    private final IntermediateStore intermediates;
+    private final String ytDlpPath;
+    private final String ffmpegPath;
+    private final Duration downloadTimeout;
 
-    public VideoDownloadService(@Value("${youtube.download.max-concurrent:3}") int max) {
+    public VideoDownloadService(
+            @Value("${youtube.download.max-concurrent:3}") int max,
+            ProcessRunner processRunner,
+            IntermediateStore intermediates,
+            @Value("${youtube.tools.yt-dlp-path:yt-dlp}") String ytDlpPath,
+            @Value("${youtube.tools.ffmpeg-path:" + DEFAULT_FFMPEG + "}") String ffmpegPath,
+            @Value("${youtube.download.timeout-minutes:30}") long downloadTimeoutMinutes) {
         this.semaphore = new Semaphore(max);
+        this.processRunner = processRunner;
+        this.intermediates = intermediates;
+        this.ytDlpPath = ytDlpPath;
+        this.ffmpegPath = ffmpegPath;
+        this.downloadTimeout = Duration.ofMinutes(downloadTimeoutMinutes);
     }
 
     @PostConstruct
     public void verifyTools() throws Exception {
-        runCommand(List.of("yt-dlp", "--version"));
-        runCommand(List.of("ffmpeg", "-version"));
+        runCommand(List.of(ytDlpPath, "--version"), VERSION_CHECK_TIMEOUT);
+        runCommand(List.of(ffmpegPath, "-version"), VERSION_CHECK_TIMEOUT);
     }
 
     public Path download(String url, String format, String title, Path dir) throws Exception {
@@ -33,7 +81,19 @@ public class VideoDownloadService {
         try {
             Path target = dir.resolve(title + "." + format);
             List<String> cmd = buildCommand(url, format, target.toString());
-            runCommand(cmd);
+            try {
+                ProcessResult result = processRunner.run(cmd, downloadTimeout, DEBUG_LOGGER);
+                if (!result.isSuccess()) {
+                    throw new YtDlpException(YtDlpError.classify(result.stderrTail()), cmd, result.exitCode(), result.stderrTail());
+                }
+            } catch (Exception e) {
+                try {
+                    deletePartialFiles(target);
+                } catch (IOException cleanup) {
+                    e.addSuppressed(cleanup);
+                }
+                throw e;
+            }
             if (!Files.exists(target)) throw new IOException("Download failed");
             return target;
         } finally {
@@ -41,8 +101,144 @@ public class VideoDownloadService {
         }
     }
 
+    /**
+     * Delete what yt-dlp leaves next to {@code target} when it fails or is killed: the partial
+     * download ({@code <name>.<ext>.part}), a merge's per-format streams ({@code <name>.f<id>.<ext>},
+     * with their {@code .part} fragments and {@code .ytdl} state) and the merger's
+     * {@code <name>.temp.<ext>}. Finished files of other formats with the same name are kept.
+     */
+    private static void deletePartialFiles(Path target) throws IOException {
+        String name = target.getFileName().toString();
+        Pattern leftover = Pattern.compile(Pattern.quote(name.substring(0, name.lastIndexOf('.')))
+                + "\\.(?:(?:f[\\w-]+|temp)\\.\\w+(?:" + PARTIAL_SUFFIX + ")?|\\w+(?:" + PARTIAL_SUFFIX + "))");
+        IOException failure = null;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(target.getParent(),
+                file -> leftover.matcher(file.getFileName().toString()).matches())) {
+            for (Path file : files) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    if (failure == null) failure = e;
+                    else failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * Fetch the video once as a merged mp4 and produce every requested format from it in parallel:
+     * mp4 is linked from the source and mp3 is extracted with ffmpeg. The source is shared through
+     * the {@link IntermediateStore} under {@code sourceKey}, so concurrent jobs for the same video
+     * reuse one download, and it is deleted once the last output is done.
+     *
+     * @return one result per format, in request order
+     * @throws Exception if the source itself cannot be fetched
+     */
+    public List<ConversionOutput> downloadMultiFormat(String url, String sourceKey, List<String> formats,
+                                                      String title, Path dir, Path workDir) throws Exception {
+        IntermediateStore.Loader loader = () -> download(url, "mp4", sourceKey + ".source", workDir);
+
+        // Hold a lease while the outputs run so a source failure surfaces here, once
+        try (IntermediateStore.Lease source = intermediates.acquire(sourceKey, loader)) {
+            List<Future<ConversionOutput>> futures = new ArrayList<>();
+            try (ExecutorService outputs = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (String format : formats) {
+                    futures.add(outputs.submit(() -> produceOutput(sourceKey, loader, format, title, dir)));
+                }
+            }
+            List<ConversionOutput> results = new ArrayList<>();
+            for (Future<ConversionOutput> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        }
+    }
+
+    private ConversionOutput produceOutput(String sourceKey, IntermediateStore.Loader loader,
+                                           String format, String title, Path dir) {
+        try (IntermediateStore.Lease source = intermediates.acquire(sourceKey, loader)) {
+            Path target = dir.resolve(title + "." + format);
+            if ("mp3".equalsIgnoreCase(format)) {
+                extractAudio(source.path(), target);
+            } else {
+                linkOrCopy(source.path(), target);
+            }
+            return new ConversionOutput(format, target.toString(), null);
+        } catch (Exception e) {
+            log.warn("Producing {} failed: {}", format, e.getMessage());
+            return new ConversionOutput(format, null, e.getMessage());
+        }
+    }
+
+    private void extractAudio(Path source, Path target) throws Exception {
+        List<String> cmd = List.of(ffmpegPath, "-nostdin", "-y", "-loglevel", "error",
+                "-i", source.toString(), "-vn", "-codec:a", "libmp3lame", "-q:a", "0", target.toString());
+        ProcessResult result = processRunner.run(cmd, downloadTimeout, ProcessOutputListener.NONE);
+        if (!result.isSuccess()) {
+            String detail = result.stderrTail().isBlank() ? "exit code " + result.exitCode()
+                    : result.stderrTail().strip().lines().reduce((first, second) -> second).orElse("");
+            throw new ProcessExecutionException("Audio extraction failed: " + detail,
+                    cmd, result.exitCode(), result.stderrTail(), false);
+        }
+        if (!Files.exists(target)) throw new IOException("Audio extraction failed");
+    }
+
+    private static void linkOrCopy(Path source, Path target) throws IOException {
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, source);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Stream the video ids of a playlist or channel using yt-dlp's flat listing, which reads
+     * only the listing pages and not each video. Ids are passed to {@code onVideoId} as yt-dlp
+     * prints them, so callers can start work before the listing finishes.
+     */
+    public void expandCollection(String url, int maxItems, Consumer<String> onVideoId) throws Exception {
+        List<String> cmd = List.of(ytDlpPath, "--flat-playlist", "--print", "id", "--no-warnings",
+                "--playlist-end", String.valueOf(maxItems), url);
+        ProcessResult result = processRunner.run(cmd, downloadTimeout, new ProcessOutputListener() {
+            @Override
+            public void onStdout(String line) {
+                String videoId = line.strip();
+                if (!videoId.isEmpty()) onVideoId.accept(videoId);
+            }
+
+            @Override
+            public void onStderr(String line) {
+                log.debug("yt-dlp stderr: {}", line);
+            }
+        });
+        if (!result.isSuccess()) {
+            throw new YtDlpException(YtDlpError.classify(result.stderrTail()), cmd, result.exitCode(), result.stderrTail());
+        }
+    }
+
+    /**
+     * Read a video's title from yt-dlp without downloading anything. Used as a metadata source
+     * when the YouTube Data API is unavailable.
+     */
+    public String fetchTitle(String url, Duration timeout) throws Exception {
+        List<String> cmd = List.of(ytDlpPath, "--skip-download", "--no-playlist", "--no-warnings",
+                "--print", "title", url);
+        ProcessResult result = processRunner.run(cmd, timeout, ProcessOutputListener.NONE);
+        if (!result.isSuccess()) {
+            throw new YtDlpException(YtDlpError.classify(result.stderrTail()), cmd, result.exitCode(), result.stderrTail());
+        }
+        String title = result.stdoutTail().strip();
+        if (title.isEmpty()) throw new IOException("yt-dlp printed no title");
+        return title.lines().findFirst().orElseThrow();
+    }
+
     private List<String> buildCommand(String url, String format, String output) {
-        List<String> cmd = new ArrayList<>(List.of("yt-dlp", "--no-check-certificate", "-o", output));
+        List<String> cmd = new ArrayList<>(List.of(ytDlpPath, "--no-check-certificate", "--no-playlist", "-o", output));
+        if (!DEFAULT_FFMPEG.equals(ffmpegPath)) {
+            cmd.addAll(List.of("--ffmpeg-location", ffmpegPath));
+        }
         if ("mp3".equalsIgnoreCase(format)) {
             cmd.addAll(List.of("--extract-audio", "--audio-format", "mp3", "--audio-quality", "0"));
         } else {
@@ -52,10 +248,11 @@ public class VideoDownloadService {
         return cmd;
     }
 
-    private void runCommand(List<String> command) throws IOException, InterruptedException {
-        Process process = new ProcessBuilder(command).start();
-        if (process.waitFor() != 0) {
-            throw new IOException("Command failed: " + String.join(" ", command));
+    private void runCommand(List<String> command, Duration timeout) throws IOException, InterruptedException {
+        ProcessResult result = processRunner.run(command, timeout, ProcessOutputListener.NONE);
+        if (!result.isSuccess()) {
+            throw new ProcessExecutionException("Command failed: " + String.join(" ", command),
+                    command, result.exitCode(), result.stderrTail(), false);
         }
     }
 }
\ No newline at end of file
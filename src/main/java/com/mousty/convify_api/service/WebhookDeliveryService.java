@@ -0,0 +1,297 @@
+package com.mousty.convify_api.service;
+
+import com.mousty.convify_api.model.ConversionJob;
+import com.mousty.convify_api.model.WebhookDelivery;
+import com.mousty.convify_api.model.WebhookEvent;
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.json.JsonMapper;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * Delivers job completion notifications to client callback URLs.
+ * <p>
+ * Notifications are persisted to the {@link WebhookOutbox} first and dispatched on a schedule.
+ * Due deliveries for the same URL are sent together as one {@code {"events":[...]}} POST,
+ * at most {@code max-concurrent-per-host} requests are in flight per host, and failed
+ * batches are retried with exponential backoff until {@code max-attempts} is reached.
+ * Each request carries an HMAC-SHA256 signature of {@code "<timestamp>.<body>"}; without
+ * {@code youtube.webhook.secret} callbacks are refused rather than sent unsigned.
+ */
+@Service
+public class WebhookDeliveryService {
+    private static final Logger log = LoggerFactory.getLogger(WebhookDeliveryService.class);
+
+    public static final String SIGNATURE_HEADER = "X-Convify-Signature";
+    public static final String TIMESTAMP_HEADER = "X-Convify-Timestamp";
+
+    private final HttpClient httpClient;
+    private final WebhookOutbox outbox;
+    private final JsonMapper jsonMapper;
+    private final SecretKeySpec signingKey;
+    private final int maxBatchSize;
+    private final int maxConcurrentPerHost;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final Duration requestTimeout;
+    private final boolean allowPrivateHosts;
+
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Counter deliveredCounter;
+    private final Counter failedAttemptCounter;
+    private final Counter deadCounter;
+    private final Timer deliveryLatency;
+
+    public WebhookDeliveryService(HttpClient webhookHttpClient, WebhookOutbox outbox, JsonMapper jsonMapper, MeterRegistry reg,
+                                  @Value("${youtube.webhook.secret:}") String secret,
+                                  @Value("${youtube.webhook.max-batch-size:20}") int maxBatchSize,
+                                  @Value("${youtube.webhook.max-concurrent-per-host:2}") int maxConcurrentPerHost,
+                                  @Value("${youtube.webhook.max-attempts:8}") int maxAttempts,
+                                  @Value("${youtube.webhook.initial-backoff-ms:1000}") long initialBackoffMs,
+                                  @Value("${youtube.webhook.max-backoff-ms:300000}") long maxBackoffMs,
+                                  @Value("${youtube.webhook.request-timeout-seconds:10}") int requestTimeoutSeconds,
+                                  @Value("${youtube.webhook.allow-private-hosts:false}") boolean allowPrivateHosts) {
+        this.httpClient = webhookHttpClient;
+        this.outbox = outbox;
+        this.jsonMapper = jsonMapper;
+        this.signingKey = secret.isBlank() ? null : new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        this.maxBatchSize = maxBatchSize;
+        this.maxConcurrentPerHost = maxConcurrentPerHost;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.requestTimeout = Duration.ofSeconds(requestTimeoutSeconds);
+        this.allowPrivateHosts = allowPrivateHosts;
+
+        this.deliveredCounter = reg.counter("webhook.delivery.success");
+        this.failedAttemptCounter = reg.counter("webhook.delivery.failure");
+        this.deadCounter = reg.counter("webhook.delivery.dead");
+        this.deliveryLatency = reg.timer("webhook.delivery.latency");
+        reg.gauge("webhook.outbox.pending", outbox, WebhookOutbox::size);
+        reg.gauge("webhook.delivery.in-flight", outbox, WebhookOutbox::claimedCount);
+
+        if (signingKey == null) log.warn("youtube.webhook.secret is not set, requests with a callbackUrl will be rejected");
+    }
+
+    /**
+     * Reject callback URLs that would make the server call itself or its private network.
+     * Checked when a job is submitted and again before every send, since DNS may have changed.
+     *
+     * @throws IllegalArgumentException if no signing secret is configured, or the URL is not http(s),
+     *                                  does not resolve, or resolves to a loopback, link-local,
+     *                                  site-local or wildcard address
+     */
+    public void validateCallbackUrl(String url) {
+        // Receivers could not tell an unsigned event from a forged one
+        if (signingKey == null) {
+            throw new IllegalArgumentException("Callbacks are disabled: youtube.webhook.secret is not configured");
+        }
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid callback URL: " + url);
+        }
+        if (!"http".equalsIgnoreCase(uri.getScheme()) && !"https".equalsIgnoreCase(uri.getScheme())
+                || uri.getHost() == null) {
+            throw new IllegalArgumentException("Callback URL must be an absolute http(s) URL");
+        }
+        if (allowPrivateHosts) return;
+
+        InetAddress[] addresses;
+        try {
+            addresses = InetAddress.getAllByName(uri.getHost());
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Callback host does not resolve: " + uri.getHost());
+        }
+        for (InetAddress address : addresses) {
+            if (isPrivate(address)) {
+                throw new IllegalArgumentException("Callback host is not publicly routable: " + uri.getHost());
+            }
+        }
+    }
+
+    private static boolean isPrivate(InetAddress address) {
+        return address.isLoopbackAddress() || address.isLinkLocalAddress() || address.isSiteLocalAddress()
+                || address.isAnyLocalAddress() || address.isMulticastAddress()
+                // IPv6 unique local fc00::/7, which isSiteLocalAddress does not cover
+                || address instanceof Inet6Address && (address.getAddress()[0] & 0xfe) == 0xfc;
+    }
+
+    public void enqueue(ConversionJob job) {
+        enqueue(job, List.of());
+    }
+
+    /**
+     * Queue the notification for a playlist or channel job, reporting the outcome of each child
+     */
+    public void enqueue(ConversionJob job, List<ConversionJob> children) {
+        Instant now = Instant.now();
+        try {
+            outbox.save(new WebhookDelivery(UUID.randomUUID().toString(), job.getJobId(), job.getCallbackUrl(),
+                    jsonMapper.writeValueAsString(WebhookEvent.of(job, children)), 0, now, now));
+        } catch (Exception e) {
+            log.error("Failed to queue webhook for job {}", job.getJobId(), e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${youtube.webhook.dispatch-interval-ms:500}")
+    public void dispatch() {
+        Map<String, List<WebhookDelivery>> byUrl = outbox.claimDue(Instant.now()).stream()
+                .collect(Collectors.groupingBy(WebhookDelivery::callbackUrl, LinkedHashMap::new, Collectors.toList()));
+
+        byUrl.forEach((url, deliveries) -> {
+            Semaphore permits = hostPermits.computeIfAbsent(hostOf(url), h -> new Semaphore(maxConcurrentPerHost));
+            for (int i = 0; i < deliveries.size(); i += maxBatchSize) {
+                if (!permits.tryAcquire()) {
+                    // Host is saturated, the remaining batches wait for the next tick
+                    outbox.release(deliveries.subList(i, deliveries.size()));
+                    return;
+                }
+                List<WebhookDelivery> batch = List.copyOf(deliveries.subList(i, Math.min(i + maxBatchSize, deliveries.size())));
+                executor.submit(() -> {
+                    try {
+                        send(url, batch);
+                    } finally {
+                        outbox.release(batch);
+                        permits.release();
+                    }
+                });
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.close();
+    }
+
+    private void send(String url, List<WebhookDelivery> batch) {
+        String body = batch.stream()
+                .map(WebhookDelivery::payload)
+                .collect(Collectors.joining(",", "{\"events\":[", "]}"));
+        String timestamp = String.valueOf(Instant.now().getEpochSecond());
+
+        try {
+            validateCallbackUrl(url);
+        } catch (IllegalArgumentException e) {
+            log.warn("Dropping webhook batch for {}: {}", url, e.getMessage());
+            onRejected(batch);
+            return;
+        }
+
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(requestTimeout)
+                    .header("Content-Type", "application/json")
+                    .header(TIMESTAMP_HEADER, timestamp)
+                    .header(SIGNATURE_HEADER, "sha256=" + sign(timestamp + "." + body))
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+
+            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() / 100 == 2) {
+                onDelivered(batch);
+            } else {
+                onFailure(batch, "HTTP " + response.statusCode());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            onFailure(batch, "interrupted");
+        } catch (Exception e) {
+            onFailure(batch, e.getMessage());
+        }
+    }
+
+    private void onDelivered(List<WebhookDelivery> batch) {
+        Instant now = Instant.now();
+        for (WebhookDelivery delivery : batch) {
+            deliveryLatency.record(Duration.between(delivery.createdAt(), now));
+            deliveredCounter.increment();
+            try {
+                outbox.remove(delivery);
+            } catch (Exception e) {
+                log.warn("Delivered webhook {} could not be removed from outbox: {}", delivery.id(), e.getMessage());
+            }
+        }
+    }
+
+    // A rejected destination will not become acceptable by retrying
+    private void onRejected(List<WebhookDelivery> batch) {
+        for (WebhookDelivery delivery : batch) {
+            deadCounter.increment();
+            try {
+                outbox.moveToDead(delivery);
+            } catch (Exception e) {
+                log.error("Failed to update outbox for webhook {}", delivery.id(), e);
+            }
+        }
+    }
+
+    private void onFailure(List<WebhookDelivery> batch, String reason) {
+        Instant now = Instant.now();
+        failedAttemptCounter.increment(batch.size());
+        for (WebhookDelivery delivery : batch) {
+            try {
+                if (delivery.attempts() + 1 >= maxAttempts) {
+                    log.warn("Giving up on webhook for job {} to {} after {} attempts: {}",
+                            delivery.jobId(), delivery.callbackUrl(), delivery.attempts() + 1, reason);
+                    deadCounter.increment();
+                    outbox.moveToDead(delivery);
+                } else {
+                    outbox.save(delivery.retryAt(now.plusMillis(backoffMs(delivery.attempts() + 1))));
+                }
+            } catch (Exception e) {
+                log.error("Failed to update outbox for webhook {}", delivery.id(), e);
+            }
+        }
+    }
+
+    /**
+     * Exponential backoff with jitter: a random delay between half and all of
+     * {@code initial * 2^(attempt-1)}, capped at the configured maximum
+     */
+    private long backoffMs(int attempt) {
+        long ceiling = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 20));
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    private String sign(String data) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(signingKey);
+        return HexFormat.of().formatHex(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host != null ? host : url;
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.mousty.convify_api.service;
+
+import com.mousty.convify_api.model.WebhookDelivery;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * File-backed outbox for webhook deliveries.
+ * Each pending delivery is one JSON file, written atomically, so undelivered notifications
+ * survive a restart. Deliveries that exhaust their retries are moved to {@code dead/}.
+ * <p>
+ * Senders take work with {@link #claimDue}, which hands each delivery to one sender at a time.
+ */
+@Service
+public class WebhookOutbox {
+    private static final Logger log = LoggerFactory.getLogger(WebhookOutbox.class);
+
+    private final Path outboxDir;
+    private final Path deadDir;
+    private final JsonMapper jsonMapper;
+    private final Map<String, WebhookDelivery> pending = new ConcurrentHashMap<>();
+    // Guarded by this
+    private final Set<String> claimed = new HashSet<>();
+
+    public WebhookOutbox(@Value("${youtube.webhook.outbox-dir:/tmp/convify-outbox}") String dir,
+                         JsonMapper jsonMapper) throws IOException {
+        this.outboxDir = Paths.get(dir).toAbsolutePath().normalize();
+        this.deadDir = outboxDir.resolve("dead");
+        this.jsonMapper = jsonMapper;
+        Files.createDirectories(deadDir);
+    }
+
+    @PostConstruct
+    public void load() throws IOException {
+        try (var stream = Files.list(outboxDir)) {
+            stream.filter(p -> p.getFileName().toString().endsWith(".json")).forEach(p -> {
+                try {
+                    WebhookDelivery delivery = jsonMapper.readValue(Files.readString(p), WebhookDelivery.class);
+                    pending.put(delivery.id(), delivery);
+                } catch (Exception e) {
+                    log.warn("Skipping unreadable outbox entry {}: {}", p.getFileName(), e.getMessage());
+                }
+            });
+        }
+        if (!pending.isEmpty()) log.info("Recovered {} pending webhook deliveries", pending.size());
+    }
+
+    public void save(WebhookDelivery delivery) throws IOException {
+        write(outboxDir, delivery);
+        pending.put(delivery.id(), delivery);
+    }
+
+    public void remove(WebhookDelivery delivery) throws IOException {
+        pending.remove(delivery.id());
+        Files.deleteIfExists(entry(outboxDir, delivery));
+    }
+
+    public void moveToDead(WebhookDelivery delivery) throws IOException {
+        pending.remove(delivery.id());
+        write(deadDir, delivery);
+        Files.deleteIfExists(entry(outboxDir, delivery));
+    }
+
+    /**
+     * Claim the deliveries that are due and not already claimed by another sender. A claimed
+     * delivery is not returned again until it is {@linkplain #release released}, which the sender
+     * must do after it has saved, removed or dead-lettered it, so the next claim sees that outcome.
+     */
+    public synchronized List<WebhookDelivery> claimDue(Instant now) {
+        List<WebhookDelivery> due = pending.values().stream()
+                .filter(d -> !claimed.contains(d.id()) && !d.nextAttemptAt().isAfter(now))
+                .sorted(Comparator.comparing(WebhookDelivery::nextAttemptAt))
+                .toList();
+        due.forEach(d -> claimed.add(d.id()));
+        return due;
+    }
+
+    public synchronized void release(Collection<WebhookDelivery> deliveries) {
+        deliveries.forEach(d -> claimed.remove(d.id()));
+    }
+
+    public synchronized int claimedCount() {
+        return claimed.size();
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    private void write(Path dir, WebhookDelivery delivery) throws IOException {
+        Path target = entry(dir, delivery);
+        Path tmp = dir.resolve(delivery.id() + ".tmp");
+        Files.writeString(tmp, jsonMapper.writeValueAsString(delivery));
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Path entry(Path dir, WebhookDelivery delivery) {
+        return dir.resolve(delivery.id() + ".json");
+    }
+}
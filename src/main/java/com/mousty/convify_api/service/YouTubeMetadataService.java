@@ -1,16 +1,43 @@
 package com.mousty.convify_api.service;
 
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpResponseException;
 import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.services.youtube.YouTube;
 import com.google.api.services.youtube.model.VideoListResponse;
+import com.mousty.convify_api.exception.VideoNotFoundException;
+import com.mousty.convify_api.exception.YtDlpError;
+import com.mousty.convify_api.exception.YtDlpException;
+import com.mousty.convify_api.resilience.CircuitBreaker;
+import com.mousty.convify_api.resilience.DailyQuota;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 
-import java.util.Collections;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -18,11 +45,20 @@ import java.util.regex.Pattern;
 public class YouTubeMetadataService {
     private static final Logger log = LoggerFactory.getLogger(YouTubeMetadataService.class);
 
-    @Value("${youtube.api.key}")
-    private String apiKey;
+    /**
+     * Maximum number of ids accepted by a single videos.list call
+     */
+    private static final int MAX_IDS_PER_REQUEST = 50;
 
-    @Value("${youtube.api.application-name:Convify}")
-    private String applicationName;
+    /**
+     * Quota cost of one videos.list call, whatever the number of ids
+     */
+    private static final long VIDEOS_LIST_COST = 1;
+
+    /**
+     * The Data API quota resets at midnight Pacific time
+     */
+    private static final ZoneId QUOTA_ZONE = ZoneId.of("America/Los_Angeles");
 
     private static final Pattern[] VIDEO_ID_PATTERNS = {
             Pattern.compile("(?:youtube\\.com/watch\\?v=|youtu\\.be/)([^&\\?/]+)"),
@@ -30,6 +66,68 @@ public class YouTubeMetadataService {
             Pattern.compile("youtube\\.com/shorts/([^&\\?/]+)")
     };
 
+    private static final Pattern PLAYLIST_ID_PATTERN = Pattern.compile("[?&]list=([^&#]+)");
+    private static final Pattern CHANNEL_PATTERN =
+            Pattern.compile("^(https?://(?:www\\.|m\\.)?youtube\\.com/(?:@[^/?#]+|channel/[^/?#]+|c/[^/?#]+|user/[^/?#]+))(/[^?#]*)?");
+
+    private final String apiKey;
+    private final String applicationName;
+    private final String rootUrl;
+    private final Cache titleCache;
+    private final VideoDownloadService downloadService;
+    private final MeterRegistry registry;
+    private final Duration timeout;
+    private final Duration hedgeDelay;
+    private final Duration ytDlpTimeout;
+    private final CircuitBreaker breaker;
+    private final DailyQuota quota;
+    private final Counter hedgeCounter;
+    private final Timer apiLatency;
+    private final ExecutorService requestExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private volatile YouTube youtube;
+
+    public YouTubeMetadataService(
+            CacheManager cacheManager,
+            VideoDownloadService downloadService,
+            MeterRegistry registry,
+            @Value("${youtube.api.key}") String apiKey,
+            @Value("${youtube.api.application-name:Convify}") String applicationName,
+            // Base URL of the YouTube Data API, overridable to point at a local fake server
+            @Value("${youtube.api.root-url:" + YouTube.DEFAULT_ROOT_URL + "}") String rootUrl,
+            @Value("${youtube.api.timeout-ms:5000}") long timeoutMs,
+            @Value("${youtube.api.hedge-delay-ms:1000}") long hedgeDelayMs,
+            @Value("${youtube.api.daily-quota:10000}") long dailyQuota,
+            @Value("${youtube.api.circuit.failure-threshold:5}") int failureThreshold,
+            @Value("${youtube.api.circuit.open-seconds:60}") long openSeconds,
+            @Value("${youtube.metadata.ytdlp-timeout-seconds:30}") long ytDlpTimeoutSeconds) {
+        this.apiKey = apiKey;
+        this.applicationName = applicationName;
+        this.rootUrl = rootUrl;
+        this.titleCache = cacheManager.getCache("videoTitles");
+        this.downloadService = downloadService;
+        this.registry = registry;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.hedgeDelay = Duration.ofMillis(hedgeDelayMs);
+        this.ytDlpTimeout = Duration.ofSeconds(ytDlpTimeoutSeconds);
+        this.breaker = new CircuitBreaker("youtube-data-api", failureThreshold, Duration.ofSeconds(openSeconds));
+        this.quota = new DailyQuota(dailyQuota, QUOTA_ZONE);
+        this.hedgeCounter = registry.counter("youtube.api.hedged");
+        this.apiLatency = registry.timer("youtube.api.latency");
+
+        Gauge.builder("youtube.api.circuit.state", breaker, b -> b.getState().ordinal())
+                .description("0 = closed, 1 = half-open, 2 = open")
+                .register(registry);
+        Gauge.builder("youtube.api.quota.used", quota, DailyQuota::used)
+                .description("Data API units spent today (Pacific time)")
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        requestExecutor.shutdownNow();
+    }
+
     public String extractVideoId(String url) {
         if (url == null) return null;
         for (Pattern pattern : VIDEO_ID_PATTERNS) {
@@ -39,26 +137,283 @@ public class YouTubeMetadataService {
         return null;
     }
 
-    @Cacheable(value = "videoTitles", key = "#videoId")
+    public String extractPlaylistId(String url) {
+        if (url == null) return null;
+        Matcher matcher = PLAYLIST_ID_PATTERN.matcher(url);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    /**
+     * A playlist or channel URL that should be expanded into one job per video.
+     * Watch URLs that also carry a {@code list=} parameter convert just the video.
+     */
+    public boolean isCollectionUrl(String url) {
+        if (url == null || extractVideoId(url) != null) return false;
+        return extractPlaylistId(url) != null || CHANNEL_PATTERN.matcher(url).find();
+    }
+
+    /**
+     * URL to hand to yt-dlp for expansion. A bare channel URL lists the channel's tabs
+     * rather than its videos, so it is pointed at the uploads tab.
+     */
+    public String collectionUrl(String url) {
+        Matcher channel = CHANNEL_PATTERN.matcher(url);
+        if (extractPlaylistId(url) == null && channel.find()) {
+            String tab = channel.group(2);
+            if (tab == null || tab.isEmpty() || tab.equals("/")) return channel.group(1) + "/videos";
+        }
+        return url;
+    }
+
+    /**
+     * Title of a video from the Data API, cached. Fails if the API is unhealthy; use
+     * {@link #resolveVideoTitle} when a fallback title is acceptable.
+     */
     public String fetchVideoTitle(String videoId) throws Exception {
-        YouTube youtube = new YouTube.Builder(
-                GoogleNetHttpTransport.newTrustedTransport(),
-                GsonFactory.getDefaultInstance(),
-                request -> {})
-                .setApplicationName(applicationName)
-                .build();
-
-        VideoListResponse response = youtube.videos()
-                .list(Collections.singletonList("snippet"))
-                .setKey(apiKey)
-                .setId(Collections.singletonList(videoId))
-                .execute();
+        String cached = cachedTitle(videoId);
+        if (cached != null) return cached;
 
+        VideoListResponse response = listVideos(Collections.singletonList(videoId));
         if (response.getItems() == null || response.getItems().isEmpty()) {
-            throw new Exception("Video not found: " + videoId);
+            throw new VideoNotFoundException(videoId);
+        }
+
+        String title = sanitizeFilename(response.getItems().getFirst().getSnippet().getTitle());
+        if (titleCache != null) titleCache.put(videoId, title);
+        return title;
+    }
+
+    /**
+     * Title for a conversion, degrading rather than failing when the Data API is slow, out of
+     * quota or behind an open circuit: the API is tried first, then yt-dlp's own metadata, and
+     * finally the video id itself is used as the title. Only a definitive answer that the
+     * video does not exist is thrown.
+     */
+    public String resolveVideoTitle(String videoId, String url) throws Exception {
+        if (videoId == null) throw new IllegalArgumentException("Unsupported video URL: " + url);
+        String cached = cachedTitle(videoId);
+        if (cached != null) {
+            lookupCounter("cache").increment();
+            return cached;
+        }
+
+        try {
+            String title = fetchVideoTitle(videoId);
+            lookupCounter("api").increment();
+            return title;
+        } catch (VideoNotFoundException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn("Data API title lookup for {} failed, falling back to yt-dlp: {}", videoId, e.getMessage());
+        }
+
+        try {
+            String title = sanitizeFilename(downloadService.fetchTitle(url, ytDlpTimeout));
+            if (titleCache != null) titleCache.put(videoId, title);
+            lookupCounter("ytdlp").increment();
+            return title;
+        } catch (YtDlpException e) {
+            // yt-dlp already knows the download cannot succeed, e.g. a private video
+            if (!e.isRetryable() && e.getError() != YtDlpError.UNKNOWN) throw e;
+            log.warn("yt-dlp title lookup for {} failed, using the video id: {}", videoId, e.getMessage());
+        } catch (Exception e) {
+            log.warn("yt-dlp title lookup for {} failed, using the video id: {}", videoId, e.getMessage());
+        }
+
+        lookupCounter("degraded").increment();
+        return videoId;
+    }
+
+    /**
+     * Resolve titles for many videos with one videos.list call per 50 ids.
+     * Cached titles are not re-fetched and new ones are added to the cache, so a later
+     * {@link #fetchVideoTitle} for the same id is free. Ids that YouTube does not return
+     * (deleted or private videos) are absent from the result.
+     */
+    public Map<String, String> fetchVideoTitles(Collection<String> videoIds) throws Exception {
+        Map<String, String> titles = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String videoId : videoIds) {
+            String cached = cachedTitle(videoId);
+            if (cached != null) titles.put(videoId, cached);
+            else missing.add(videoId);
+        }
+
+        for (int i = 0; i < missing.size(); i += MAX_IDS_PER_REQUEST) {
+            List<String> chunk = missing.subList(i, Math.min(i + MAX_IDS_PER_REQUEST, missing.size()));
+            VideoListResponse response = listVideos(chunk);
+
+            if (response.getItems() == null) continue;
+            response.getItems().forEach(video -> {
+                String title = sanitizeFilename(video.getSnippet().getTitle());
+                titles.put(video.getId(), title);
+                if (titleCache != null) titleCache.put(video.getId(), title);
+            });
+        }
+        log.debug("Resolved {} of {} titles ({} from cache)", titles.size(), videoIds.size(), videoIds.size() - missing.size());
+        return titles;
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return breaker.getState();
+    }
+
+    public long getQuotaRemaining() {
+        return quota.remaining();
+    }
+
+    /**
+     * One videos.list call guarded by the circuit breaker and the daily quota
+     */
+    private VideoListResponse listVideos(List<String> ids) throws Exception {
+        if (!breaker.tryAcquire()) throw new IOException("YouTube Data API circuit is open");
+        if (!quota.tryConsume(VIDEOS_LIST_COST)) {
+            breaker.trip();
+            throw new IOException("YouTube Data API daily quota is exhausted");
         }
 
-        return sanitizeFilename(response.getItems().getFirst().getSnippet().getTitle());
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            VideoListResponse response = hedged(ids);
+            breaker.onSuccess();
+            return response;
+        } catch (Exception e) {
+            recordFailure(e);
+            throw e;
+        } finally {
+            sample.stop(apiLatency);
+        }
+    }
+
+    /**
+     * Send the request and, if it has not answered within the hedge delay, a second identical
+     * one, returning whichever succeeds first. This cuts tail latency at the cost of one extra
+     * quota unit for slow calls only. The losing request is cancelled, which aborts its HTTP
+     * call, but YouTube has usually received it by then, so its quota unit is still spent.
+     */
+    private VideoListResponse hedged(List<String> ids) throws Exception {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        CompletableFuture<VideoListResponse> primary = execute(ids);
+        CompletableFuture<VideoListResponse> hedge = null;
+        try {
+            CompletableFuture<VideoListResponse> winner = primary;
+            if (hedgeDelay.isPositive() && hedgeDelay.compareTo(timeout) < 0) {
+                try {
+                    return primary.get(hedgeDelay.toNanos(), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException slow) {
+                    if (quota.tryConsume(VIDEOS_LIST_COST)) {
+                        hedgeCounter.increment();
+                        hedge = execute(ids);
+                        winner = firstSuccessful(primary, hedge);
+                    }
+                }
+            }
+            try {
+                return winner.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                throw new TimeoutException("YouTube Data API did not answer within " + timeout.toMillis() + " ms");
+            }
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } finally {
+            primary.cancel(true);
+            if (hedge != null) hedge.cancel(true);
+        }
+    }
+
+    private CompletableFuture<VideoListResponse> execute(List<String> ids) {
+        CompletableFuture<VideoListResponse> result = new CompletableFuture<>();
+        Future<?> call = requestExecutor.submit(() -> {
+            try {
+                result.complete(youtube().videos()
+                        .list(Collections.singletonList("snippet"))
+                        .setKey(apiKey)
+                        .setId(ids)
+                        .setMaxResults((long) MAX_IDS_PER_REQUEST)
+                        .execute());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        // Cancelling a CompletableFuture does not interrupt its task; interrupting the
+        // virtual thread closes the socket of its in-flight request
+        result.whenComplete((response, error) -> {
+            if (result.isCancelled()) call.cancel(true);
+        });
+        return result;
+    }
+
+    private static <T> CompletableFuture<T> firstSuccessful(CompletableFuture<T> a, CompletableFuture<T> b) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        BiConsumer<T, Throwable> onDone = (value, error) -> {
+            if (error == null) result.complete(value);
+            else if (failures.incrementAndGet() == 2) result.completeExceptionally(error);
+        };
+        a.whenComplete(onDone);
+        b.whenComplete(onDone);
+        return result;
+    }
+
+    private static Exception unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof Exception exception ? exception : e;
+    }
+
+    private void recordFailure(Exception e) {
+        String reason;
+        if (e instanceof GoogleJsonResponseException response && isQuotaExceeded(response)) {
+            reason = "QUOTA";
+            quota.exhaust();
+            breaker.trip();
+        } else {
+            if (e instanceof TimeoutException || e instanceof SocketTimeoutException) reason = "TIMEOUT";
+            else if (e instanceof HttpResponseException) reason = "HTTP";
+            else reason = "NETWORK";
+            breaker.onFailure();
+        }
+        registry.counter("youtube.api.failures", "reason", reason).increment();
+    }
+
+    private static boolean isQuotaExceeded(GoogleJsonResponseException e) {
+        if (e.getStatusCode() != 403 || e.getDetails() == null || e.getDetails().getErrors() == null) return false;
+        return e.getDetails().getErrors().stream()
+                .anyMatch(error -> "quotaExceeded".equals(error.getReason()) || "dailyLimitExceeded".equals(error.getReason()));
+    }
+
+    private String cachedTitle(String videoId) {
+        return titleCache != null ? titleCache.get(videoId, String.class) : null;
+    }
+
+    private Counter lookupCounter(String source) {
+        return registry.counter("youtube.metadata.lookups", "source", source);
+    }
+
+    // One client for the lifetime of the service; building a trusted transport per call is expensive
+    private YouTube youtube() throws Exception {
+        YouTube client = youtube;
+        if (client == null) {
+            synchronized (this) {
+                if (youtube == null) {
+                    int timeoutMs = (int) timeout.toMillis();
+                    youtube = new YouTube.Builder(
+                            GoogleNetHttpTransport.newTrustedTransport(),
+                            GsonFactory.getDefaultInstance(),
+                            request -> {
+                                request.setConnectTimeout(timeoutMs);
+                                request.setReadTimeout(timeoutMs);
+                            })
+                            .setApplicationName(applicationName)
+                            .setRootUrl(rootUrl)
+                            .build();
+                }
+                client = youtube;
+            }
+        }
+        return client;
     }
 
     private String sanitizeFilename(String filename) {
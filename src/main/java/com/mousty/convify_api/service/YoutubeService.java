@@ -6,14 +6,14 @@ import com.mousty.convify_api.model.ConversionJob;
 import io.github.bucket4j.Bucket;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Map;
 
@@ -24,15 +24,18 @@ public class YoutubeService {
 
     private final ConversionManagerService conversionManager;
     private final FileStorageService storageService;
+    private final FileDeliveryService deliveryService;
     private final Bucket rateLimitBucket;
 
     public YoutubeService(
         ConversionManagerService conversionManager,
         FileStorageService storageService,
+        FileDeliveryService deliveryService,
         Bucket rateLimitBucket
     ){
         this.conversionManager = conversionManager;
         this.storageService = storageService;
+        this.deliveryService = deliveryService;
         this.rateLimitBucket = rateLimitBucket;
     }
 
@@ -42,7 +45,7 @@ public class YoutubeService {
                     .body(Map.of("error", "Rate limit exceeded"));
         }
 
-        String jobId = conversionManager.startConversion(request.url(), request.format());
+        String jobId = conversionManager.startConversion(request.url(), request.requestedFormats(), request.callbackUrl());
 
         return ResponseEntity.accepted().body(Map.of(
                 "jobId", jobId,
@@ -55,22 +58,24 @@ public class YoutubeService {
         return ResponseEntity.ok(conversionManager.getStatus(jobId));
     }
 
-    public ResponseEntity<Resource> download(FilepathRequest request) {
+    public ResponseEntity<StreamingResponseBody> download(FilepathRequest request, String clientId) {
         try {
             Path filePath = storageService.validatePath(request.filepath());
-            Resource resource = new FileSystemResource(filePath);
 
-            if (!resource.exists()) {
+            if (!Files.isRegularFile(filePath)) {
                 return ResponseEntity.notFound().build();
             }
 
             String contentType = request.filepath().toLowerCase().endsWith(".mp3")
                     ? "audio/mpeg" : "video/mp4";
 
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filePath.getFileName() + "\"")
-                    .body(resource);
+            return deliveryService.stream(filePath, clientId)
+                    .map(body -> ResponseEntity.ok()
+                            .contentType(MediaType.parseMediaType(contentType))
+                            .contentLength(filePath.toFile().length())
+                            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filePath.getFileName() + "\"")
+                            .body(body))
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build());
         } catch (SecurityException e) {
             log.warn("Security violation: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
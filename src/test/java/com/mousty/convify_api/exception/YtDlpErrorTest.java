@@ -0,0 +1,40 @@
+package com.mousty.convify_api.exception;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class YtDlpErrorTest {
+
+    @Test
+    void classifiesKnownSignatures() {
+        assertEquals(YtDlpError.PRIVATE_VIDEO,
+                YtDlpError.classify("ERROR: [youtube] abc: Private video. Sign in if you've been granted access to this video"));
+        assertEquals(YtDlpError.GEO_RESTRICTED,
+                YtDlpError.classify("ERROR: [youtube] abc: Video unavailable. The uploader has not made this video available in your country"));
+        assertEquals(YtDlpError.AGE_RESTRICTED,
+                YtDlpError.classify("ERROR: [youtube] abc: Sign in to confirm your age. This video may be inappropriate for some users."));
+        assertEquals(YtDlpError.RATE_LIMITED,
+                YtDlpError.classify("ERROR: unable to download video data: HTTP Error 429: Too Many Requests"));
+        assertEquals(YtDlpError.VIDEO_UNAVAILABLE,
+                YtDlpError.classify("ERROR: [youtube] abc: Video unavailable"));
+        assertEquals(YtDlpError.UNKNOWN, YtDlpError.classify("something odd happened"));
+    }
+
+    @Test
+    void exceptionMessageUsesLastErrorLine() {
+        String stderr = """
+                [youtube] abc: Downloading webpage
+                WARNING: [youtube] falling back
+                ERROR: [youtube] abc: Private video. Sign in if you've been granted access to this video
+                """;
+
+        YtDlpException e = new YtDlpException(YtDlpError.classify(stderr), List.of("yt-dlp"), 1, stderr);
+
+        assertEquals("Video is private: ERROR: [youtube] abc: Private video. Sign in if you've been granted access to this video",
+                e.getMessage());
+        assertFalse(e.isRetryable());
+    }
+}
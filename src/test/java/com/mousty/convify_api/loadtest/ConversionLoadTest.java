@@ -0,0 +1,158 @@
+package com.mousty.convify_api.loadtest;
+
+import com.mousty.convify_api.testsupport.FakeYouTubeApiServer;
+import com.mousty.convify_api.testsupport.StubTools;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.condition.OS;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Boots the application against stub yt-dlp/ffmpeg binaries and a fake YouTube Data API,
+ * then runs the {@link LoadGenerator} against it.
+ * <p>
+ * Disabled by default. Run with:
+ * <pre>
+ * mvn test -Dtest=ConversionLoadTest -Dloadtest=true -Dloadtest.jobs=500 -Dloadtest.concurrency=50
+ * </pre>
+ * Tunables (system properties): {@code loadtest.jobs}, {@code loadtest.concurrency},
+ * {@code loadtest.stub.latency-ms}, {@code loadtest.stub.output-bytes},
+ * {@code loadtest.stub.failure-percent}, {@code loadtest.stub.playlist-size}, {@code loadtest.api.latency-ms},
+ * {@code loadtest.api.failure-percent}.
+ */
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+@DisabledOnOs(OS.WINDOWS)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ConversionLoadTest {
+
+    private static final int JOBS = Integer.getInteger("loadtest.jobs", 100);
+    private static final int CONCURRENCY = Integer.getInteger("loadtest.concurrency", 10);
+    private static final int FAILURE_PERCENT = Integer.getInteger("loadtest.stub.failure-percent", 0);
+    private static final int PLAYLIST_SIZE = Integer.getInteger("loadtest.stub.playlist-size", 10);
+
+    private static final Path WORK_DIR;
+    private static final StubTools TOOLS;
+    private static final FakeYouTubeApiServer API;
+
+    static {
+        try {
+            WORK_DIR = Files.createTempDirectory("convify-loadtest");
+            TOOLS = StubTools.install(WORK_DIR.resolve("bin"),
+                    Long.getLong("loadtest.stub.latency-ms", 500),
+                    Long.getLong("loadtest.stub.output-bytes", 1_048_576),
+                    FAILURE_PERCENT, PLAYLIST_SIZE);
+            API = new FakeYouTubeApiServer(Long.getLong("loadtest.api.latency-ms", 20),
+                    Integer.getInteger("loadtest.api.failure-percent", 0)).start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Value("${local.server.port}")
+    private int port;
+
+    @DynamicPropertySource
+    static void stubProperties(DynamicPropertyRegistry registry) {
+        registry.add("youtube.tools.yt-dlp-path", TOOLS::ytDlpPath);
+        registry.add("youtube.tools.ffmpeg-path", TOOLS::ffmpegPath);
+        registry.add("youtube.api.root-url", API::rootUrl);
+        registry.add("youtube.api.key", () -> "load-test");
+        registry.add("app.download.dir", () -> WORK_DIR.resolve("downloads").toString());
+        registry.add("youtube.download.min-disk-space-gb", () -> 0);
+        registry.add("youtube.rate-limit.capacity", () -> Integer.MAX_VALUE);
+        registry.add("youtube.rate-limit.refill-tokens", () -> Integer.MAX_VALUE);
+        // Every simulated client shares 127.0.0.1, so per-client delivery limits are lifted by default
+        registry.add("youtube.delivery.max-transfers-per-client",
+                () -> Integer.getInteger("loadtest.delivery.max-transfers-per-client", Integer.MAX_VALUE));
+        registry.add("youtube.delivery.client-bytes-per-second",
+                () -> Long.getLong("loadtest.delivery.client-bytes-per-second", 0));
+        registry.add("management.endpoints.web.exposure.include", () -> "health,metrics");
+    }
+
+    @AfterAll
+    static void stopFakeApi() {
+        API.close();
+    }
+
+    @Test
+    void conversionPathUnderLoad() throws Exception {
+        LoadReport report = new LoadGenerator(URI.create("http://localhost:" + port), JOBS, CONCURRENCY,
+                Duration.ofMillis(100), Duration.ofMinutes(5)).run();
+
+        System.out.println(report.format());
+
+        assertEquals(JOBS, report.submitted());
+        assertEquals(0, report.timedOut());
+        if (FAILURE_PERCENT == 0) {
+            assertEquals(JOBS, report.completed());
+        }
+        assertTrue(API.requestCount() > 0);
+    }
+
+    @Test
+    void playlistFansOutIntoChildJobs() throws Exception {
+        String parent = convertAndWait("{\"url\":\"https://www.youtube.com/playlist?list=PLload\",\"format\":\"mp3\"}");
+
+        assertTrue(parent.matches("(?s).*\"totalItems\"\\s*:\\s*" + PLAYLIST_SIZE + "\\b.*"), parent);
+        if (FAILURE_PERCENT == 0) {
+            assertTrue(parent.matches("(?s).*\"status\"\\s*:\\s*\"COMPLETED\".*"), parent);
+        }
+    }
+
+    @Test
+    void multiFormatJobProducesEveryOutputFromOneSource() throws Exception {
+        String job = convertAndWait(
+                "{\"url\":\"https://www.youtube.com/watch?v=multi\",\"formats\":[\"mp3\",\"mp4\"]}");
+
+        if (FAILURE_PERCENT == 0) {
+            assertTrue(job.matches("(?s).*\"filePath\"\\s*:\\s*\"[^\"]+\\.mp3\".*"), job);
+            assertTrue(job.matches("(?s).*\"filePath\"\\s*:\\s*\"[^\"]+\\.mp4\".*"), job);
+            try (var work = Files.list(WORK_DIR.resolve("downloads").resolve(".work"))) {
+                assertEquals(0, work.count());
+            }
+        }
+    }
+
+    private String convertAndWait(String body) throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        URI base = URI.create("http://localhost:" + port);
+
+        String submitted = client.send(HttpRequest.newBuilder(base.resolve("/v1/convert/async"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString()).body();
+        Matcher jobId = Pattern.compile("\"jobId\"\\s*:\\s*\"([^\"]+)\"").matcher(submitted);
+        assertTrue(jobId.find(), submitted);
+
+        String job;
+        long deadline = System.currentTimeMillis() + 120_000;
+        do {
+            Thread.sleep(200);
+            job = client.send(HttpRequest.newBuilder(base.resolve("/v1/convert/status/" + jobId.group(1))).build(),
+                    HttpResponse.BodyHandlers.ofString()).body();
+            assertTrue(System.currentTimeMillis() < deadline, "Job did not finish: " + job);
+        } while (job.matches("(?s).*\"status\"\\s*:\\s*\"(PENDING|PROCESSING)\".*"));
+        return job;
+    }
+}
@@ -0,0 +1,242 @@
+package com.mousty.convify_api.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Drives the conversion path end to end against a running server:
+ * {@code POST /v1/convert/async} → poll {@code GET /v1/convert/status/{jobId}} → {@code POST /v1/download}.
+ * <p>
+ * Each of {@code concurrency} virtual-thread workers runs jobs back to back until {@code totalJobs}
+ * have been submitted. Server CPU, heap and thread counts are sampled from actuator metrics while
+ * the run is in progress.
+ * <p>
+ * Can be run standalone against any deployment:
+ * <pre>
+ * java ... LoadGenerator http://localhost:8080 500 50
+ * </pre>
+ */
+public class LoadGenerator {
+
+    private static final Pattern JOB_ID = Pattern.compile("\"jobId\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern STATUS = Pattern.compile("\"status\"\\s*:\\s*\"([A-Z]+)\"");
+    private static final Pattern FILE_PATH = Pattern.compile("\"filePath\"\\s*:\\s*\"((?:[^\"\\\\]|\\\\.)*)\"");
+    private static final Pattern MEASUREMENT = Pattern.compile("\"value\"\\s*:\\s*([0-9.Ee+-]+)");
+
+    private final URI baseUrl;
+    private final int totalJobs;
+    private final int concurrency;
+    private final Duration pollInterval;
+    private final Duration jobTimeout;
+    private final HttpClient client;
+
+    private final AtomicInteger nextJob = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger rejected = new AtomicInteger();
+    private final AtomicInteger timedOut = new AtomicInteger();
+    private final AtomicLong bytesDownloaded = new AtomicLong();
+    private final List<Long> submitLatencies = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> endToEndLatencies = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> downloadLatencies = Collections.synchronizedList(new ArrayList<>());
+    private final List<Double> cpuSamples = Collections.synchronizedList(new ArrayList<>());
+    private volatile double peakHeapMb = Double.NaN;
+    private volatile double peakThreads = Double.NaN;
+
+    public LoadGenerator(URI baseUrl, int totalJobs, int concurrency, Duration pollInterval, Duration jobTimeout) {
+        this.baseUrl = baseUrl;
+        this.totalJobs = totalJobs;
+        this.concurrency = concurrency;
+        this.pollInterval = pollInterval;
+        this.jobTimeout = jobTimeout;
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        URI baseUrl = URI.create(args.length > 0 ? args[0] : "http://localhost:8080");
+        int jobs = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        LoadReport report = new LoadGenerator(baseUrl, jobs, concurrency,
+                Duration.ofMillis(200), Duration.ofMinutes(5)).run();
+        System.out.println(report.format());
+    }
+
+    public LoadReport run() throws InterruptedException {
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().factory());
+        sampler.scheduleAtFixedRate(this::sampleResources, 0, 1, TimeUnit.SECONDS);
+
+        long start = System.nanoTime();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                futures.add(workers.submit(this::worker));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                }
+            }
+        } finally {
+            sampler.shutdownNow();
+        }
+        Duration wallTime = Duration.ofNanos(System.nanoTime() - start);
+
+        return new LoadReport(
+                Math.min(nextJob.get(), totalJobs), completed.get(), failed.get(), rejected.get(), timedOut.get(),
+                bytesDownloaded.get(), wallTime,
+                LoadReport.Percentiles.of(List.copyOf(submitLatencies)),
+                LoadReport.Percentiles.of(List.copyOf(endToEndLatencies)),
+                LoadReport.Percentiles.of(List.copyOf(downloadLatencies)),
+                resourceUsage());
+    }
+
+    private void worker() {
+        int n;
+        while ((n = nextJob.getAndIncrement()) < totalJobs) {
+            try {
+                runJob(n);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                failed.incrementAndGet();
+            }
+        }
+    }
+
+    private void runJob(int n) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        String format = n % 2 == 0 ? "mp3" : "mp4";
+        String body = "{\"url\":\"https://www.youtube.com/watch?v=load" + n + "\",\"format\":\"" + format + "\"}";
+
+        HttpResponse<String> submit = client.send(jsonPost("/v1/convert/async", body), HttpResponse.BodyHandlers.ofString());
+        submitLatencies.add(elapsedMs(start));
+        if (submit.statusCode() == 429) {
+            rejected.incrementAndGet();
+            return;
+        }
+        String jobId = match(JOB_ID, submit.body());
+        if (submit.statusCode() != 202 || jobId == null) {
+            failed.incrementAndGet();
+            return;
+        }
+
+        long deadline = start + jobTimeout.toNanos();
+        String job;
+        String status;
+        do {
+            Thread.sleep(pollInterval);
+            job = client.send(get("/v1/convert/status/" + jobId), HttpResponse.BodyHandlers.ofString()).body();
+            status = match(STATUS, job);
+            if (System.nanoTime() > deadline) {
+                timedOut.incrementAndGet();
+                return;
+            }
+        } while ("PENDING".equals(status) || "PROCESSING".equals(status));
+
+        String filePath = match(FILE_PATH, job);
+        if (!"COMPLETED".equals(status) || filePath == null) {
+            failed.incrementAndGet();
+            return;
+        }
+
+        long downloadStart = System.nanoTime();
+        HttpResponse<InputStream> download = client.send(
+                jsonPost("/v1/download", "{\"filepath\":\"" + filePath + "\"}"),
+                HttpResponse.BodyHandlers.ofInputStream());
+        long bytes;
+        try (InputStream in = download.body()) {
+            bytes = in.transferTo(OutputStream.nullOutputStream());
+        }
+        downloadLatencies.add(elapsedMs(downloadStart));
+
+        if (download.statusCode() != 200) {
+            failed.incrementAndGet();
+            return;
+        }
+        bytesDownloaded.addAndGet(bytes);
+        endToEndLatencies.add(elapsedMs(start));
+        completed.incrementAndGet();
+    }
+
+    private void sampleResources() {
+        double cpu = metric("process.cpu.usage");
+        if (!Double.isNaN(cpu)) cpuSamples.add(cpu);
+        peakHeapMb = max(peakHeapMb, metric("jvm.memory.used?tag=area:heap") / 1_048_576.0);
+        peakThreads = max(peakThreads, metric("jvm.threads.live"));
+    }
+
+    private double metric(String name) {
+        try {
+            HttpResponse<String> response = client.send(get("/actuator/metrics/" + name), HttpResponse.BodyHandlers.ofString());
+            String value = response.statusCode() == 200 ? match(MEASUREMENT, response.body()) : null;
+            return value == null ? Double.NaN : Double.parseDouble(value);
+        } catch (IOException e) {
+            return Double.NaN;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Double.NaN;
+        }
+    }
+
+    private LoadReport.ResourceUsage resourceUsage() {
+        List<Double> cpu = List.copyOf(cpuSamples);
+        double avg = cpu.stream().mapToDouble(Double::doubleValue).average().orElse(Double.NaN);
+        double peak = cpu.stream().mapToDouble(Double::doubleValue).max().orElse(Double.NaN);
+        return new LoadReport.ResourceUsage(avg, peak, peakHeapMb, peakThreads);
+    }
+
+    private HttpRequest jsonPost(String path, String json) {
+        return HttpRequest.newBuilder(baseUrl.resolve(path))
+                .timeout(Duration.ofMinutes(1))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(baseUrl.resolve(path))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+    }
+
+    private static String match(Pattern pattern, String body) {
+        if (body == null) return null;
+        Matcher matcher = pattern.matcher(body);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private static double max(double current, double sample) {
+        if (Double.isNaN(sample)) return current;
+        return Double.isNaN(current) ? sample : Math.max(current, sample);
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
@@ -0,0 +1,80 @@
+package com.mousty.convify_api.loadtest;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Result of a {@link LoadGenerator} run.
+ */
+public record LoadReport(
+        int submitted,
+        int completed,
+        int failed,
+        int rejected,
+        int timedOut,
+        long bytesDownloaded,
+        Duration wallTime,
+        Percentiles submitLatency,
+        Percentiles endToEndLatency,
+        Percentiles downloadLatency,
+        ResourceUsage resources
+) {
+
+    public double throughputPerSecond() {
+        double seconds = wallTime.toNanos() / 1_000_000_000.0;
+        return seconds == 0 ? 0 : completed / seconds;
+    }
+
+    public String format() {
+        return String.format("""
+                Jobs:        submitted=%d completed=%d failed=%d rejected=%d timedOut=%d
+                Wall time:   %d ms
+                Throughput:  %.2f jobs/s, %.2f MB downloaded
+                Submit:      %s
+                End-to-end:  %s
+                Download:    %s
+                Resources:   %s""",
+                submitted, completed, failed, rejected, timedOut,
+                wallTime.toMillis(),
+                throughputPerSecond(), bytesDownloaded / 1_048_576.0,
+                submitLatency, endToEndLatency, downloadLatency, resources);
+    }
+
+    /**
+     * Latency distribution in milliseconds.
+     */
+    public record Percentiles(int count, long p50, long p90, long p99, long max) {
+
+        public static Percentiles of(List<Long> samplesMs) {
+            if (samplesMs.isEmpty()) return new Percentiles(0, 0, 0, 0, 0);
+            long[] sorted = samplesMs.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            return new Percentiles(sorted.length,
+                    at(sorted, 0.50), at(sorted, 0.90), at(sorted, 0.99), sorted[sorted.length - 1]);
+        }
+
+        private static long at(long[] sorted, double quantile) {
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("n=%d p50=%dms p90=%dms p99=%dms max=%dms", count, p50, p90, p99, max);
+        }
+    }
+
+    /**
+     * Peak and average server-side resource usage sampled from the actuator metrics endpoint.
+     * Values are {@code NaN} when the target does not expose metrics.
+     */
+    public record ResourceUsage(double avgCpu, double peakCpu, double peakHeapMb, double peakThreads) {
+
+        @Override
+        public String toString() {
+            return String.format("cpu avg=%.1f%% peak=%.1f%%, heap peak=%.1f MB, threads peak=%.0f",
+                    avgCpu * 100, peakCpu * 100, peakHeapMb, peakThreads);
+        }
+    }
+}
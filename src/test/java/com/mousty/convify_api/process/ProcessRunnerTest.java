@@ -0,0 +1,68 @@
+package com.mousty.convify_api.process;
+
+import com.mousty.convify_api.exception.ProcessTimeoutException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs its commands through sh
+@DisabledOnOs(OS.WINDOWS)
+class ProcessRunnerTest {
+
+    private final ProcessRunner runner = new ProcessRunner(4, 1);
+
+    @Test
+    void drainsOutputLargerThanPipeBuffer() throws Exception {
+        // ~1 MB on each stream would deadlock a child whose pipes are never read
+        ProcessResult result = runner.run(
+                sh("i=0; while [ $i -lt 20000 ]; do echo \"out line $i padding padding padding\"; "
+                        + "echo \"err line $i padding padding padding\" >&2; i=$((i+1)); done; exit 3"),
+                Duration.ofSeconds(30), ProcessOutputListener.NONE);
+
+        assertEquals(3, result.exitCode());
+        assertTrue(result.stderrTail().endsWith("err line 19999 padding padding padding"));
+        assertTrue(result.stderrTail().length() <= 1024);
+    }
+
+    @Test
+    void forwardsLinesToListener() throws Exception {
+        List<String> stdout = new CopyOnWriteArrayList<>();
+        List<String> stderr = new CopyOnWriteArrayList<>();
+
+        ProcessResult result = runner.run(sh("echo one; echo two >&2; echo three"), Duration.ofSeconds(10),
+                new ProcessOutputListener() {
+                    @Override
+                    public void onStdout(String line) {
+                        stdout.add(line);
+                    }
+
+                    @Override
+                    public void onStderr(String line) {
+                        stderr.add(line);
+                    }
+                });
+
+        assertTrue(result.isSuccess());
+        assertEquals(List.of("one", "three"), stdout);
+        assertEquals(List.of("two"), stderr);
+    }
+
+    @Test
+    void killsProcessOnTimeout() {
+        ProcessTimeoutException e = assertThrows(ProcessTimeoutException.class,
+                () -> runner.run(sh("echo starting >&2; sleep 30"), Duration.ofMillis(300), ProcessOutputListener.NONE));
+
+        assertFalse(e.isRetryable());
+        assertTrue(e.getStderrTail().startsWith("starting"));
+    }
+
+    private static List<String> sh(String script) {
+        return List.of("sh", "-c", script);
+    }
+}
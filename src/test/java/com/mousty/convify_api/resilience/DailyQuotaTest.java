@@ -0,0 +1,81 @@
+package com.mousty.convify_api.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DailyQuotaTest {
+
+    private static final ZoneId PACIFIC = ZoneId.of("America/Los_Angeles");
+
+    private final MutableClock clock = new MutableClock(ZonedDateTime.of(2026, 3, 10, 23, 59, 0, 0, PACIFIC).toInstant());
+    private final DailyQuota quota = new DailyQuota(3, clock);
+
+    @Test
+    void rejectsUnitsBeyondTheDailyLimit() {
+        assertTrue(quota.tryConsume(2));
+        assertFalse(quota.tryConsume(2));
+        assertTrue(quota.tryConsume(1));
+        assertFalse(quota.tryConsume(1));
+        assertEquals(3, quota.used());
+        assertEquals(0, quota.remaining());
+    }
+
+    @Test
+    void resetsAtMidnightPacificTime() {
+        assertTrue(quota.tryConsume(3));
+
+        // 07:00 UTC is still the same Pacific day
+        clock.advance(Duration.ofSeconds(59));
+        assertFalse(quota.tryConsume(1));
+
+        clock.advance(Duration.ofSeconds(1));
+        assertEquals(0, quota.used());
+        assertTrue(quota.tryConsume(3));
+    }
+
+    @Test
+    void exhaustSpendsTheRestOfTheDay() {
+        assertTrue(quota.tryConsume(1));
+
+        quota.exhaust();
+        assertEquals(0, quota.remaining());
+        assertFalse(quota.tryConsume(1));
+
+        clock.advance(Duration.ofMinutes(1));
+        assertEquals(3, quota.remaining());
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return PACIFIC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
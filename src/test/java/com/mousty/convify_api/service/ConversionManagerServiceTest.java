@@ -0,0 +1,268 @@
+package com.mousty.convify_api.service;
+
+import com.mousty.convify_api.exception.ProcessTimeoutException;
+import com.mousty.convify_api.exception.YtDlpError;
+import com.mousty.convify_api.exception.YtDlpException;
+import com.mousty.convify_api.model.ConversionJob;
+import com.mousty.convify_api.model.ConversionOutput;
+import com.mousty.convify_api.model.ConversionStatus;
+import com.mousty.convify_api.model.WebhookEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ConversionManagerServiceTest {
+
+    private static final String URL = "https://www.youtube.com/watch?v=abc";
+    private static final String PLAYLIST_URL = "https://www.youtube.com/playlist?list=PLtest";
+    private static final int MAX_RETRIES = 2;
+    private static final int MAX_PARALLEL_CHILDREN = 2;
+
+    @TempDir
+    Path downloadDir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final YouTubeMetadataService metadata = mock(YouTubeMetadataService.class);
+    private final VideoDownloadService downloads = mock(VideoDownloadService.class);
+    private final WebhookDeliveryService webhooks = mock(WebhookDeliveryService.class);
+    private ConversionManagerService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(metadata.extractVideoId(anyString())).thenCallRealMethod();
+        when(metadata.extractPlaylistId(anyString())).thenCallRealMethod();
+        when(metadata.isCollectionUrl(anyString())).thenCallRealMethod();
+        when(metadata.collectionUrl(anyString())).thenCallRealMethod();
+        when(metadata.resolveVideoTitle(anyString(), anyString())).thenAnswer(call -> "Title " + call.getArgument(0));
+        // Small batches so a playlist spans several title lookups
+        service = new ConversionManagerService(metadata, downloads, new FileStorageService(downloadDir.toString()),
+                webhooks, registry, MAX_RETRIES, 1, 200, MAX_PARALLEL_CHILDREN, 3);
+    }
+
+    @Test
+    void retriesTransientYtDlpErrors() throws Exception {
+        when(downloads.download(anyString(), anyString(), anyString(), any()))
+                .thenThrow(ytDlp(YtDlpError.RATE_LIMITED))
+                .thenReturn(downloadDir.resolve("Title abc.mp3"));
+
+        ConversionJob job = await(service.startConversion(URL, List.of("mp3"), null));
+
+        assertEquals(ConversionStatus.COMPLETED, job.getStatus());
+        verify(downloads, times(2)).download(anyString(), anyString(), anyString(), any());
+        assertEquals(1, registry.counter("conversion.retry").count());
+    }
+
+    @Test
+    void givesUpAfterMaxRetries() throws Exception {
+        when(downloads.download(anyString(), anyString(), anyString(), any())).thenThrow(ytDlp(YtDlpError.NETWORK));
+
+        ConversionJob job = await(service.startConversion(URL, List.of("mp3"), null));
+
+        assertEquals(ConversionStatus.FAILED, job.getStatus());
+        verify(downloads, times(MAX_RETRIES + 1)).download(anyString(), anyString(), anyString(), any());
+        assertEquals(1, registry.counter("conversion.failure", "reason", "NETWORK").count());
+    }
+
+    @Test
+    void doesNotRetryDefinitiveYtDlpErrors() throws Exception {
+        when(downloads.download(anyString(), anyString(), anyString(), any())).thenThrow(ytDlp(YtDlpError.PRIVATE_VIDEO));
+
+        ConversionJob job = await(service.startConversion(URL, List.of("mp3"), null));
+
+        assertEquals(ConversionStatus.FAILED, job.getStatus());
+        assertTrue(job.getErrorMessage().startsWith("Video is private"), job.getErrorMessage());
+        verify(downloads, times(1)).download(anyString(), anyString(), anyString(), any());
+        assertEquals(0, registry.counter("conversion.retry").count());
+        assertEquals(1, registry.counter("conversion.failure", "reason", "PRIVATE_VIDEO").count());
+    }
+
+    @Test
+    void doesNotRetryTimeouts() throws Exception {
+        when(downloads.download(anyString(), anyString(), anyString(), any()))
+                .thenThrow(new ProcessTimeoutException("Command timed out after 1800s", List.of("yt-dlp"), ""));
+
+        ConversionJob job = await(service.startConversion(URL, List.of("mp3"), null));
+
+        assertEquals(ConversionStatus.FAILED, job.getStatus());
+        verify(downloads, times(1)).download(anyString(), anyString(), anyString(), any());
+        assertEquals(1, registry.counter("conversion.failure", "reason", "TIMEOUT").count());
+    }
+
+    @Test
+    void multiFormatJobCompletesWithPartialOutputs() throws Exception {
+        when(downloads.downloadMultiFormat(anyString(), anyString(), any(), anyString(), any(), any())).thenReturn(List.of(
+                new ConversionOutput("mp3", null, "Audio extraction failed: exit code 1"),
+                new ConversionOutput("mp4", "/downloads/Title abc.mp4", null)));
+
+        ConversionJob job = await(service.startConversion(URL, List.of("mp3", "mp4"), null));
+
+        assertEquals(ConversionStatus.COMPLETED, job.getStatus());
+        assertEquals("/downloads/Title abc.mp4", job.getFilePath());
+        assertEquals(2, job.getOutputs().size());
+        assertEquals("mp3: Audio extraction failed: exit code 1", job.getErrorMessage());
+        assertEquals(1, registry.counter("conversion.success").count());
+    }
+
+    @Test
+    void multiFormatJobFailsWhenEveryOutputFails() throws Exception {
+        when(downloads.downloadMultiFormat(anyString(), anyString(), any(), anyString(), any(), any())).thenReturn(List.of(
+                new ConversionOutput("mp3", null, "Audio extraction failed: exit code 1"),
+                new ConversionOutput("mp4", null, "Disk full")));
+
+        ConversionJob job = await(service.startConversion(URL, List.of("mp3", "mp4"), null));
+
+        assertEquals(ConversionStatus.FAILED, job.getStatus());
+        assertNull(job.getFilePath());
+        assertEquals("mp3: Audio extraction failed: exit code 1; mp4: Disk full", job.getErrorMessage());
+        assertEquals(1, registry.counter("conversion.failure", "reason", "OUTPUT").count());
+    }
+
+    @Test
+    void fansOutPlaylistWithinParallelLimit() throws Exception {
+        List<String> ids = List.of("v0", "v1", "v2", "bad", "v3", "gone", "v4", "v5");
+        listPlaylist(ids);
+        // "gone" is deleted, so the API does not return it and it fails before dispatch
+        when(metadata.fetchVideoTitles(any())).thenAnswer(call -> {
+            Map<String, String> titles = new LinkedHashMap<>();
+            for (String id : call.<Collection<String>>getArgument(0)) {
+                if (!id.equals("gone")) titles.put(id, "Title " + id);
+            }
+            return titles;
+        });
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(downloads.download(anyString(), anyString(), anyString(), any())).thenAnswer(call -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(30);
+                String url = call.getArgument(0);
+                if (url.endsWith("bad")) throw ytDlp(YtDlpError.VIDEO_UNAVAILABLE);
+                return downloadDir.resolve(call.<String>getArgument(2) + ".mp3");
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+
+        ConversionJob parent = await(service.startConversion(PLAYLIST_URL, List.of("mp3"), "https://example.com/hook"));
+
+        assertEquals(ConversionStatus.COMPLETED, parent.getStatus());
+        assertEquals(8, parent.getTotalItems());
+        assertEquals(6, parent.getCompletedItems());
+        assertEquals(2, parent.getFailedItems());
+        assertEquals("2 of 8 videos failed", parent.getErrorMessage());
+        assertEquals(8, parent.getChildJobIds().size());
+        assertEquals(MAX_PARALLEL_CHILDREN, maxRunning.get(), "Children running at once");
+        verify(downloads, times(7)).download(anyString(), anyString(), anyString(), any());
+        for (String childId : parent.getChildJobIds()) {
+            assertNotNull(service.getStatus(childId).getCompletedAt());
+        }
+        // Children have no callback URL; the parent notifies exactly once
+        verify(webhooks, after(200).times(1)).enqueue(eq(parent), any());
+        verify(webhooks, never()).enqueue(any());
+    }
+
+    @Test
+    void notifiesParentWithChildOutcomes() throws Exception {
+        listPlaylist(List.of("v0", "bad", "gone"));
+        when(metadata.fetchVideoTitles(any())).thenReturn(Map.of("v0", "Title v0", "bad", "Title bad"));
+        when(downloads.download(anyString(), anyString(), anyString(), any())).thenAnswer(call -> {
+            if (call.<String>getArgument(0).endsWith("bad")) throw ytDlp(YtDlpError.VIDEO_UNAVAILABLE);
+            return downloadDir.resolve(call.<String>getArgument(2) + ".mp3");
+        });
+
+        ConversionJob parent = await(service.startConversion(PLAYLIST_URL, List.of("mp3"), "https://example.com/hook"));
+
+        ArgumentCaptor<List<ConversionJob>> children = ArgumentCaptor.captor();
+        verify(webhooks, timeout(1000)).enqueue(eq(parent), children.capture());
+        WebhookEvent event = WebhookEvent.of(parent, children.getValue());
+
+        assertEquals("conversion.partially_completed", event.event());
+        assertEquals(3, event.totalItems());
+        assertEquals(1, event.completedItems());
+        assertEquals(2, event.failedItems());
+        assertEquals(1.0, event.progress());
+        assertEquals(parent.getChildJobIds(), event.children().stream().map(WebhookEvent.Child::jobId).toList());
+
+        WebhookEvent.Child done = event.children().get(0);
+        assertEquals("v0", done.videoId());
+        assertEquals(ConversionStatus.COMPLETED, done.status());
+        assertEquals(downloadDir.resolve("Title v0.mp3").toString(), done.filePath());
+        assertEquals(ConversionStatus.FAILED, event.children().get(1).status());
+        assertTrue(event.children().get(1).errorMessage().startsWith("Video is unavailable"));
+        assertEquals("Video not found: gone", event.children().get(2).errorMessage());
+    }
+
+    @Test
+    void failsEmptyPlaylist() throws Exception {
+        listPlaylist(List.of());
+
+        ConversionJob parent = await(service.startConversion(PLAYLIST_URL, List.of("mp3"), "https://example.com/hook"));
+
+        assertEquals(ConversionStatus.FAILED, parent.getStatus());
+        assertEquals(0, parent.getTotalItems());
+        assertEquals("No videos found", parent.getErrorMessage());
+        verify(webhooks, after(200).times(1)).enqueue(eq(parent), eq(List.of()));
+    }
+
+    @Test
+    void keepsChildrenListedBeforeExpansionFailed() throws Exception {
+        doAnswer(call -> {
+            Consumer<String> onVideoId = call.getArgument(2);
+            onVideoId.accept("v0");
+            onVideoId.accept("v1");
+            throw ytDlp(YtDlpError.NETWORK);
+        }).when(downloads).expandCollection(anyString(), anyInt(), any());
+        when(metadata.fetchVideoTitles(any())).thenThrow(new IOException("YouTube Data API circuit is open"));
+        when(downloads.download(anyString(), anyString(), anyString(), any()))
+                .thenAnswer(call -> downloadDir.resolve(call.<String>getArgument(2) + ".mp3"));
+
+        ConversionJob parent = await(service.startConversion(PLAYLIST_URL, List.of("mp3"), null));
+
+        assertEquals(ConversionStatus.COMPLETED, parent.getStatus());
+        assertEquals(2, parent.getTotalItems());
+        assertEquals(2, parent.getCompletedItems());
+        assertTrue(parent.getErrorMessage().startsWith("Network error"), parent.getErrorMessage());
+        verifyNoInteractions(webhooks);
+    }
+
+    private void listPlaylist(List<String> ids) throws Exception {
+        doAnswer(call -> {
+            Consumer<String> onVideoId = call.getArgument(2);
+            ids.forEach(onVideoId);
+            return null;
+        }).when(downloads).expandCollection(anyString(), anyInt(), any());
+    }
+
+    private ConversionJob await(String jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        ConversionJob job;
+        while ((job = service.getStatus(jobId)).getCompletedAt() == null) {
+            assertTrue(System.currentTimeMillis() < deadline, "Job did not finish: " + job.getStatus());
+            Thread.sleep(10);
+        }
+        return job;
+    }
+
+    private static YtDlpException ytDlp(YtDlpError error) {
+        return new YtDlpException(error, List.of("yt-dlp"), 1, "ERROR: " + error.getDescription());
+    }
+}
@@ -0,0 +1,146 @@
+package com.mousty.convify_api.service;
+
+import com.mousty.convify_api.config.DeliveryConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.tomcat.servlet.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServer;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.StandardServletAsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileDeliveryServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void throttlesToClientBandwidth() throws Exception {
+        Path file = file(300 * 1024);
+        FileDeliveryService service = new FileDeliveryService(registry, 0, 100 * 1024, 4);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long start = System.nanoTime();
+        service.stream(file, "client-a").orElseThrow().writeTo(out);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // 100 KB burst, then 200 KB at 100 KB/s
+        assertEquals(300 * 1024, out.size());
+        assertTrue(elapsedMs >= 1800, "Finished too quickly: " + elapsedMs + "ms");
+        assertEquals(300 * 1024, registry.counter("download.egress.bytes").count());
+    }
+
+    @Test
+    void limitsConcurrentTransfersPerClient() throws Exception {
+        Path file = file(1024);
+        FileDeliveryService service = new FileDeliveryService(registry, 0, 0, 1);
+
+        StreamingResponseBody first = service.stream(file, "client-a").orElseThrow();
+        assertTrue(service.stream(file, "client-a").isEmpty());
+        assertTrue(service.stream(file, "client-b").isPresent());
+
+        first.writeTo(OutputStream.nullOutputStream());
+        assertTrue(service.stream(file, "client-a").isPresent());
+    }
+
+    @Test
+    void releasesSlotWhenBodyNeverRuns() throws Exception {
+        Path file = file(1024);
+        FileDeliveryService service = new FileDeliveryService(registry, 0, 0, 1);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+        try {
+            StreamingResponseBody body = service.stream(file, "client-a").orElseThrow();
+            assertTrue(service.stream(file, "client-a").isEmpty());
+
+            // The async executor rejects the body, then the request completes without running it
+            WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(request);
+            asyncManager.setAsyncWebRequest(new StandardServletAsyncWebRequest(request, response));
+            asyncManager.setTaskExecutor(new TaskExecutorAdapter(task -> {
+                throw new RejectedExecutionException("Executor shut down");
+            }));
+            asyncManager.startCallableProcessing(() -> {
+                body.writeTo(OutputStream.nullOutputStream());
+                return null;
+            });
+            request.getAsyncContext().complete();
+
+            assertTrue(service.stream(file, "client-a").isPresent());
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    @Test
+    void abortsDownloadWhenClientStopsReading() throws Exception {
+        // Large enough to fill both sides' socket buffers on loopback
+        Path file = file(64 * 1024 * 1024);
+        FileDeliveryService service = new FileDeliveryService(registry, 0, 0, 4);
+        CompletableFuture<Throwable> outcome = new CompletableFuture<>();
+
+        TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory(0);
+        new DeliveryConfig().deliveryWriteTimeoutCustomizer(1).customize(factory);
+        factory.addInitializers(context -> context.addServlet("download", new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) {
+                try {
+                    service.stream(file, "stalled").orElseThrow().writeTo(response.getOutputStream());
+                    outcome.complete(null);
+                } catch (Exception e) {
+                    outcome.complete(e);
+                }
+            }
+        }).addMapping("/download"));
+        WebServer server = factory.getWebServer();
+        server.start();
+
+        try (Socket client = new Socket()) {
+            client.setReceiveBufferSize(4096);
+            client.connect(new InetSocketAddress("127.0.0.1", server.getPort()));
+            client.getOutputStream().write("GET /download HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    .getBytes(StandardCharsets.US_ASCII));
+
+            // The client never reads, so the server's write blocks until the timeout
+            Throwable failure = outcome.get(30, TimeUnit.SECONDS);
+            assertInstanceOf(IOException.class, failure);
+            assertEquals(1, registry.counter("download.write.timeouts").count());
+            assertEquals(0, registry.get("download.transfers.active").gauge().value());
+        } finally {
+            server.stop();
+        }
+    }
+
+    private Path file(int size) throws IOException {
+        Path file = dir.resolve("video-" + size + ".mp4");
+        Files.write(file, new byte[size]);
+        return file;
+    }
+}
@@ -0,0 +1,69 @@
+package com.mousty.convify_api.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntermediateStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private final IntermediateStore store = new IntermediateStore();
+
+    @Test
+    void concurrentLeasesShareOneLoadAndDeleteAfterLastClose() throws Exception {
+        Path file = dir.resolve("source.mp4");
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        IntermediateStore.Loader loader = () -> {
+            loads.incrementAndGet();
+            release.await();
+            return Files.writeString(file, "video");
+        };
+
+        List<Future<IntermediateStore.Lease>> leases = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 3; i++) {
+                leases.add(executor.submit(() -> store.acquire("abc", loader)));
+            }
+            Thread.sleep(100);
+            release.countDown();
+        }
+
+        assertEquals(1, loads.get());
+        leases.get(0).get().close();
+        leases.get(1).get().close();
+        assertTrue(Files.exists(file));
+
+        leases.get(2).get().close();
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void failedLoadIsRetriedByNextCaller() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        IntermediateStore.Loader loader = () -> {
+            if (loads.incrementAndGet() == 1) throw new IOException("fetch failed");
+            return Files.writeString(dir.resolve("source.mp4"), "video");
+        };
+
+        assertThrows(IOException.class, () -> store.acquire("abc", loader));
+        try (IntermediateStore.Lease lease = store.acquire("abc", loader)) {
+            assertTrue(Files.exists(lease.path()));
+        }
+        assertEquals(2, loads.get());
+    }
+}
@@ -0,0 +1,104 @@
+package com.mousty.convify_api.service;
+
+import com.mousty.convify_api.exception.YtDlpException;
+import com.mousty.convify_api.model.ConversionOutput;
+import com.mousty.convify_api.process.ProcessRunner;
+import com.mousty.convify_api.testsupport.StubTools;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The stub tools are shell scripts installed with POSIX permissions
+@DisabledOnOs(OS.WINDOWS)
+class VideoDownloadServiceTest {
+
+    private static final String URL = "https://www.youtube.com/watch?v=abc";
+
+    @TempDir
+    Path tempDir;
+
+    private Path downloadDir;
+    private Path workDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        downloadDir = Files.createDirectories(tempDir.resolve("downloads"));
+        workDir = Files.createDirectories(downloadDir.resolve(".work"));
+    }
+
+    @Test
+    void producesEveryFormatFromOneDownload() throws Exception {
+        StubTools tools = StubTools.install(tempDir.resolve("bin"), 0, 4096, 0);
+
+        List<ConversionOutput> outputs = service(tools.ytDlpPath(), tools.ffmpegPath())
+                .downloadMultiFormat(URL, "abc", List.of("mp3", "mp4"), "Title", downloadDir, workDir);
+
+        assertEquals(List.of("mp3", "mp4"), outputs.stream().map(ConversionOutput::format).toList());
+        assertEquals(1024, Files.size(Path.of(outputs.get(0).filePath())));
+        assertEquals(4096, Files.size(Path.of(outputs.get(1).filePath())));
+        assertEquals(1, tools.ytDlpCalls());
+        assertWorkDirEmpty();
+    }
+
+    @Test
+    void keepsOutputsThatSucceedWhenAnotherFails() throws Exception {
+        StubTools tools = StubTools.install(tempDir.resolve("bin"), 0, 4096, 0);
+
+        // Audio extraction fails, the linked mp4 does not need ffmpeg
+        List<ConversionOutput> outputs = service(tools.ytDlpPath(), "false")
+                .downloadMultiFormat(URL, "abc", List.of("mp3", "mp4"), "Title", downloadDir, workDir);
+
+        assertNull(outputs.get(0).filePath());
+        assertTrue(outputs.get(0).errorMessage().startsWith("Audio extraction failed"), outputs.get(0).errorMessage());
+        assertNotNull(outputs.get(1).filePath());
+        assertNull(outputs.get(1).errorMessage());
+        assertWorkDirEmpty();
+    }
+
+    @Test
+    void cleansUpAfterSourceFailure() throws Exception {
+        StubTools tools = StubTools.install(tempDir.resolve("bin"), 0, 4096, 100);
+        VideoDownloadService service = service(tools.ytDlpPath(), tools.ffmpegPath());
+
+        assertThrows(YtDlpException.class, () ->
+                service.downloadMultiFormat(URL, "abc", List.of("mp3", "mp4"), "Title", downloadDir, workDir));
+        assertWorkDirEmpty();
+
+        // The failed source is not cached, a later job fetches it again
+        assertThrows(YtDlpException.class, () ->
+                service.downloadMultiFormat(URL, "abc", List.of("mp3", "mp4"), "Title", downloadDir, workDir));
+        assertEquals(2, tools.ytDlpCalls());
+    }
+
+    @Test
+    void keepsOtherFormatsWhenCleaningUpFailedDownload() throws Exception {
+        StubTools tools = StubTools.install(tempDir.resolve("bin"), 0, 4096, 100);
+        Path finished = Files.writeString(downloadDir.resolve("Title.mp4"), "earlier job");
+
+        assertThrows(YtDlpException.class, () ->
+                service(tools.ytDlpPath(), tools.ffmpegPath()).download(URL, "mp3", "Title", downloadDir));
+
+        try (var files = Files.list(downloadDir)) {
+            assertEquals(List.of(workDir, finished), files.sorted().toList());
+        }
+    }
+
+    private VideoDownloadService service(String ytDlpPath, String ffmpegPath) {
+        return new VideoDownloadService(3, new ProcessRunner(4, 16), new IntermediateStore(), ytDlpPath, ffmpegPath, 1);
+    }
+
+    private void assertWorkDirEmpty() throws IOException {
+        try (var files = Files.list(workDir)) {
+            assertEquals(List.of(), files.toList());
+        }
+    }
+}
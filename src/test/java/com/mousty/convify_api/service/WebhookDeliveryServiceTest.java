@@ -0,0 +1,196 @@
+package com.mousty.convify_api.service;
+
+import com.mousty.convify_api.model.ConversionJob;
+import com.mousty.convify_api.model.ConversionStatus;
+import com.mousty.convify_api.model.WebhookDelivery;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tools.jackson.databind.json.JsonMapper;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebhookDeliveryServiceTest {
+
+    private static final String SECRET = "test-secret";
+
+    record Received(String body, String timestamp, String signature) {}
+
+    @TempDir
+    Path outboxDir;
+
+    private HttpServer receiver;
+    private final List<Received> received = new CopyOnWriteArrayList<>();
+    private final AtomicInteger failuresToReturn = new AtomicInteger();
+    private WebhookOutbox outbox;
+    private WebhookDeliveryService service;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        receiver = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        receiver.createContext("/hook", exchange -> {
+            try (exchange) {
+                String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                if (failuresToReturn.getAndDecrement() > 0) {
+                    exchange.sendResponseHeaders(503, -1);
+                    return;
+                }
+                received.add(new Received(body,
+                        exchange.getRequestHeaders().getFirst(WebhookDeliveryService.TIMESTAMP_HEADER),
+                        exchange.getRequestHeaders().getFirst(WebhookDeliveryService.SIGNATURE_HEADER)));
+                exchange.sendResponseHeaders(204, -1);
+            }
+        });
+        receiver.start();
+
+        JsonMapper jsonMapper = JsonMapper.builder().build();
+        registry = new SimpleMeterRegistry();
+        outbox = new WebhookOutbox(outboxDir.toString(), jsonMapper);
+        service = new WebhookDeliveryService(HttpClient.newHttpClient(), outbox, jsonMapper, registry,
+                SECRET, 20, 2, 3, 10, 50, 5, true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        receiver.stop(0);
+    }
+
+    @Test
+    void batchesJobsForSameUrlIntoOneSignedPost() throws Exception {
+        service.enqueue(completedJob("job-1"));
+        service.enqueue(completedJob("job-2"));
+        service.enqueue(completedJob("job-3"));
+
+        dispatchUntil(() -> outbox.size() == 0);
+
+        assertEquals(1, received.size());
+        Received request = received.getFirst();
+        assertTrue(request.body().contains("\"job-1\"") && request.body().contains("\"job-3\""));
+        assertEquals("sha256=" + hmac(request.timestamp() + "." + request.body()), request.signature());
+        assertEquals(3, registry.counter("webhook.delivery.success").count());
+    }
+
+    @Test
+    void retriesFailedDeliveryWithBackoff() throws Exception {
+        failuresToReturn.set(1);
+        service.enqueue(completedJob("job-1"));
+
+        dispatchUntil(() -> outbox.size() == 0);
+
+        assertEquals(1, received.size());
+        assertEquals(1, registry.counter("webhook.delivery.failure").count());
+    }
+
+    @Test
+    void movesDeliveryToDeadLetterAfterMaxAttempts() throws Exception {
+        failuresToReturn.set(Integer.MAX_VALUE);
+        service.enqueue(completedJob("job-1"));
+
+        dispatchUntil(() -> outbox.size() == 0);
+
+        assertTrue(received.isEmpty());
+        assertEquals(1, registry.counter("webhook.delivery.dead").count());
+    }
+
+    @Test
+    void recoversPendingDeliveriesAfterRestart() throws Exception {
+        service.enqueue(completedJob("job-1"));
+
+        WebhookOutbox reloaded = new WebhookOutbox(outboxDir.toString(), JsonMapper.builder().build());
+        reloaded.load();
+
+        assertEquals(1, reloaded.size());
+    }
+
+    @Test
+    void claimsEachDueDeliveryOnce() throws Exception {
+        service.enqueue(completedJob("job-1"));
+
+        List<WebhookDelivery> claimed = outbox.claimDue(Instant.now());
+        assertEquals(1, claimed.size());
+        assertEquals(List.of(), outbox.claimDue(Instant.now()));
+
+        // The sender records the outcome before releasing, so the next claim sees the retry
+        WebhookDelivery retry = claimed.getFirst().retryAt(Instant.now());
+        outbox.save(retry);
+        outbox.release(claimed);
+        assertEquals(List.of(retry), outbox.claimDue(Instant.now()));
+    }
+
+    @Test
+    void rejectsPrivateCallbackHosts() throws Exception {
+        WebhookDeliveryService strict = new WebhookDeliveryService(HttpClient.newHttpClient(), outbox,
+                JsonMapper.builder().build(), registry, SECRET, 20, 2, 3, 10, 50, 5, false);
+        try {
+            for (String url : List.of("http://127.0.0.1/hook", "http://localhost/hook", "http://169.254.169.254/latest",
+                    "http://10.0.0.1/hook", "http://192.168.1.1/hook", "http://0.0.0.0/hook", "http://[::1]/hook",
+                    "http://[fd00::1]/hook", "file:///etc/passwd")) {
+                assertThrows(IllegalArgumentException.class, () -> strict.validateCallbackUrl(url), url);
+            }
+
+            // A queued delivery whose host became private is dropped, not sent or retried
+            strict.enqueue(completedJob("job-1"));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (outbox.size() > 0) {
+                assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for webhook rejection");
+                strict.dispatch();
+                Thread.sleep(20);
+            }
+            assertTrue(received.isEmpty());
+            assertEquals(1, registry.counter("webhook.delivery.dead").count());
+        } finally {
+            strict.shutdown();
+        }
+    }
+
+    @Test
+    void rejectsCallbacksWithoutSecret() {
+        WebhookDeliveryService unsigned = new WebhookDeliveryService(HttpClient.newHttpClient(), outbox,
+                JsonMapper.builder().build(), registry, "", 20, 2, 3, 10, 50, 5, true);
+        try {
+            assertThrows(IllegalArgumentException.class, () -> unsigned.validateCallbackUrl("https://example.com/hook"));
+        } finally {
+            unsigned.shutdown();
+        }
+    }
+
+    private ConversionJob completedJob(String jobId) {
+        ConversionJob job = new ConversionJob(jobId, "https://youtu.be/abc", "mp3",
+                "http://127.0.0.1:" + receiver.getAddress().getPort() + "/hook");
+        job.setStatus(ConversionStatus.COMPLETED);
+        job.setCompletedAt(Instant.now());
+        return job;
+    }
+
+    private void dispatchUntil(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for webhook delivery");
+            service.dispatch();
+            Thread.sleep(20);
+        }
+    }
+
+    private static String hmac(String data) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return HexFormat.of().formatHex(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,149 @@
+package com.mousty.convify_api.service;
+
+import com.mousty.convify_api.process.ProcessRunner;
+import com.mousty.convify_api.resilience.CircuitBreaker;
+import com.mousty.convify_api.testsupport.FakeYouTubeApiServer;
+import com.mousty.convify_api.testsupport.StubTools;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The stub tools are shell scripts installed with POSIX permissions
+@DisabledOnOs(OS.WINDOWS)
+class YouTubeMetadataServiceTest {
+
+    private static final String URL = "https://www.youtube.com/watch?v=";
+
+    @TempDir
+    Path tempDir;
+
+    private SimpleMeterRegistry registry;
+    private StubTools tools;
+    private FakeYouTubeApiServer api;
+    private YouTubeMetadataService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        tools = StubTools.install(tempDir.resolve("bin"), 0, 1024, 0);
+        api = new FakeYouTubeApiServer(0, 0).start();
+        service = newService(api, tools.ytDlpPath(), 2000, 0, 5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        api.close();
+    }
+
+    private YouTubeMetadataService newService(FakeYouTubeApiServer api, String ytDlpPath,
+                                              long timeoutMs, long hedgeDelayMs, int failureThreshold) {
+        // Gauges register once per registry, so each service gets its own
+        registry = new SimpleMeterRegistry();
+        VideoDownloadService downloads = new VideoDownloadService(1, new ProcessRunner(4, 16), new IntermediateStore(),
+                ytDlpPath, "ffmpeg", 1);
+        return new YouTubeMetadataService(new ConcurrentMapCacheManager("videoTitles"), downloads, registry,
+                "test", "Convify", api.rootUrl(), timeoutMs, hedgeDelayMs, 10000, failureThreshold, 60, 10);
+    }
+
+    @Test
+    void detectsPlaylistAndChannelUrls() {
+        assertTrue(service.isCollectionUrl("https://www.youtube.com/playlist?list=PL123"));
+        assertTrue(service.isCollectionUrl("https://www.youtube.com/@convify"));
+        assertTrue(service.isCollectionUrl("https://www.youtube.com/channel/UC123/videos"));
+        assertFalse(service.isCollectionUrl("https://www.youtube.com/watch?v=abc&list=PL123"));
+        assertFalse(service.isCollectionUrl("https://youtu.be/abc"));
+
+        assertEquals("PL123", service.extractPlaylistId("https://www.youtube.com/watch?v=abc&list=PL123"));
+        assertEquals("https://www.youtube.com/@convify/videos", service.collectionUrl("https://www.youtube.com/@convify"));
+        assertEquals("https://www.youtube.com/@convify/shorts", service.collectionUrl("https://www.youtube.com/@convify/shorts"));
+    }
+
+    @Test
+    void resolvesTitlesInBatchesAndCachesThem() throws Exception {
+        List<String> ids = IntStream.range(0, 120).mapToObj(i -> "vid" + i).toList();
+
+        Map<String, String> titles = service.fetchVideoTitles(ids);
+
+        assertEquals(120, titles.size());
+        assertEquals("Load Test vid7", titles.get("vid7"));
+        assertEquals(3, api.requestCount());
+
+        service.fetchVideoTitles(ids);
+        assertEquals(3, api.requestCount());
+    }
+
+    @Test
+    void hedgesSlowRequests() throws Exception {
+        try (FakeYouTubeApiServer slow = new FakeYouTubeApiServer(300, 0).start()) {
+            YouTubeMetadataService hedging = newService(slow, tools.ytDlpPath(), 2000, 100, 5);
+            try {
+                assertEquals("Load Test abc", hedging.fetchVideoTitle("abc"));
+                assertEquals(2, slow.requestCount());
+                assertEquals(1.0, registry.counter("youtube.api.hedged").count());
+                assertEquals(2.0, registry.get("youtube.api.quota.used").gauge().value());
+            } finally {
+                hedging.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void timesOutSlowRequests() throws Exception {
+        try (FakeYouTubeApiServer slow = new FakeYouTubeApiServer(1000, 0).start()) {
+            YouTubeMetadataService impatient = newService(slow, tools.ytDlpPath(), 200, 0, 5);
+            try {
+                assertThrows(Exception.class, () -> impatient.fetchVideoTitle("abc"));
+                assertEquals(1.0, registry.counter("youtube.api.failures", "reason", "TIMEOUT").count());
+            } finally {
+                impatient.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void opensCircuitAndFallsBackToYtDlp() throws Exception {
+        try (FakeYouTubeApiServer failing = new FakeYouTubeApiServer(0, 100).start()) {
+            YouTubeMetadataService degraded = newService(failing, tools.ytDlpPath(), 2000, 0, 2);
+            try {
+                for (String id : List.of("a", "b", "c")) {
+                    assertEquals("Stub Video", degraded.resolveVideoTitle(id, URL + id));
+                }
+                assertEquals(2, failing.requestCount());
+                assertEquals(CircuitBreaker.State.OPEN, degraded.getCircuitState());
+                assertEquals(2.0, registry.get("youtube.api.circuit.state").gauge().value());
+                assertEquals(3.0, registry.counter("youtube.metadata.lookups", "source", "ytdlp").count());
+
+                // The fallback title is cached like an API one
+                assertEquals("Stub Video", degraded.resolveVideoTitle("a", URL + "a"));
+                assertEquals(1.0, registry.counter("youtube.metadata.lookups", "source", "cache").count());
+            } finally {
+                degraded.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void usesVideoIdWhenEverySourceFails() throws Exception {
+        try (FakeYouTubeApiServer failing = new FakeYouTubeApiServer(0, 100).start()) {
+            YouTubeMetadataService degraded = newService(failing, "false", 2000, 0, 5);
+            try {
+                assertEquals("abc", degraded.resolveVideoTitle("abc", URL + "abc"));
+                assertEquals(1.0, registry.counter("youtube.metadata.lookups", "source", "degraded").count());
+            } finally {
+                degraded.shutdown();
+            }
+        }
+    }
+}
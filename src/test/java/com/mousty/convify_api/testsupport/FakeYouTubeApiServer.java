@@ -0,0 +1,108 @@
+package com.mousty.convify_api.testsupport;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Minimal local stand-in for the YouTube Data API {@code videos.list} endpoint.
+ * Every requested id resolves to a video titled {@code "Load Test <id>"}.
+ * Point {@code youtube.api.root-url} at {@link #rootUrl()} to use it.
+ */
+public class FakeYouTubeApiServer implements AutoCloseable {
+
+    private static final String VIDEOS_PATH = "/youtube/v3/videos";
+
+    private final HttpServer server;
+    private final long latencyMs;
+    private final int failurePercent;
+    private final AtomicLong requests = new AtomicLong();
+
+    public FakeYouTubeApiServer(long latencyMs, int failurePercent) throws IOException {
+        this.latencyMs = latencyMs;
+        this.failurePercent = failurePercent;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.server.createContext(VIDEOS_PATH, this::handleVideosList);
+    }
+
+    public FakeYouTubeApiServer start() {
+        server.start();
+        return this;
+    }
+
+    public String rootUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    public long requestCount() {
+        return requests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handleVideosList(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (exchange) {
+            if (latencyMs > 0) {
+                Thread.sleep(latencyMs);
+            }
+            if (ThreadLocalRandom.current().nextInt(100) < failurePercent) {
+                respond(exchange, 503, "{\"error\":{\"code\":503,\"message\":\"Backend Error\"}}");
+                return;
+            }
+
+            String items = idParams(exchange.getRequestURI().getRawQuery()).stream()
+                    .flatMap(ids -> Arrays.stream(ids.split(",")))
+                    .filter(id -> !id.isBlank())
+                    .map(FakeYouTubeApiServer::videoJson)
+                    .collect(Collectors.joining(","));
+
+            respond(exchange, 200, "{\"kind\":\"youtube#videoListResponse\",\"items\":[" + items + "]}");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String videoJson(String id) {
+        return "{\"kind\":\"youtube#video\",\"id\":\"" + id + "\","
+                + "\"snippet\":{\"title\":\"Load Test " + id + "\",\"channelTitle\":\"Convify\"}}";
+    }
+
+    // The Google client sends list parameters either repeated or comma-joined
+    private static List<String> idParams(String query) {
+        List<String> ids = new ArrayList<>();
+        if (query == null) return ids;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals("id")) {
+                ids.add(URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return ids;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.mousty.convify_api.testsupport;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Objects;
+
+/**
+ * Installs the stub yt-dlp and ffmpeg scripts from {@code stubs/bin} into a working directory.
+ * Each installed tool is a small wrapper that pins the stub's latency, output size, failure rate
+ * and playlist size, so the application under test can point {@code youtube.tools.*-path} at it
+ * directly.
+ */
+public final class StubTools {
+
+    private final Path ytDlp;
+    private final Path ffmpeg;
+    private final Path ytDlpCallLog;
+
+    private StubTools(Path ytDlp, Path ffmpeg, Path ytDlpCallLog) {
+        this.ytDlp = ytDlp;
+        this.ffmpeg = ffmpeg;
+        this.ytDlpCallLog = ytDlpCallLog;
+    }
+
+    public static StubTools install(Path dir, long latencyMs, long outputBytes, int failurePercent) throws IOException {
+        return install(dir, latencyMs, outputBytes, failurePercent, 10);
+    }
+
+    public static StubTools install(Path dir, long latencyMs, long outputBytes, int failurePercent, int playlistSize)
+            throws IOException {
+        Files.createDirectories(dir);
+        Path callLog = dir.resolve("yt-dlp.calls");
+        String env = "STUB_LATENCY_MS=" + latencyMs
+                + " STUB_OUTPUT_BYTES=" + outputBytes
+                + " STUB_FAILURE_PERCENT=" + failurePercent
+                + " STUB_PLAYLIST_SIZE=" + playlistSize
+                + " STUB_CALL_LOG='" + callLog + "'";
+
+        Path ytDlp = writeWrapper(dir.resolve("yt-dlp"), env, resource("yt-dlp"));
+        Path ffmpeg = writeWrapper(dir.resolve("ffmpeg"), env, resource("ffmpeg"));
+        return new StubTools(ytDlp, ffmpeg, callLog);
+    }
+
+    public String ytDlpPath() {
+        return ytDlp.toString();
+    }
+
+    public String ffmpegPath() {
+        return ffmpeg.toString();
+    }
+
+    /**
+     * Number of times the stub yt-dlp has been run, version probes included
+     */
+    public long ytDlpCalls() throws IOException {
+        if (!Files.exists(ytDlpCallLog)) return 0;
+        try (var lines = Files.lines(ytDlpCallLog)) {
+            return lines.count();
+        }
+    }
+
+    private static Path writeWrapper(Path wrapper, String env, Path stub) throws IOException {
+        makeExecutable(stub);
+        Files.writeString(wrapper, "#!/bin/sh\nexec env " + env + " \"" + stub + "\" \"$@\"\n");
+        makeExecutable(wrapper);
+        return wrapper;
+    }
+
+    private static Path resource(String name) throws IOException {
+        try {
+            var url = Objects.requireNonNull(
+                    StubTools.class.getResource("/stubs/bin/" + name),
+                    "Missing stub tool: " + name);
+            return Paths.get(url.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+
+    // Maven does not preserve file modes when copying test resources
+    private static void makeExecutable(Path path) throws IOException {
+        Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rwxr-xr-x"));
+    }
+}